@@ -0,0 +1,92 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Formato binario compacto del grafo y conversión desde/hacia guategrafo.txt.
+ *
+ * Estructura (big-endian):
+ *   cabecera:  MAGIA (int), VERSION (int), ciudades (int), conexiones (int)
+ *   nombres:   por ciudad, longitud (unsigned short) + bytes UTF-8
+ *   conexiones: registros de ancho fijo con id origen (int), id destino (int) y
+ *               los tiempos normal, lluvia, nieve y tormenta (double)
+ * Los ids son posiciones en la tabla de nombres. GrafoFloyd.cargarDesdeBinario lo lee.
+ *
+ * Uso: java ArchivoGrafoBinario a-binario|a-texto origen destino
+ */
+public class ArchivoGrafoBinario {
+
+    static final int MAGIA = 0x47524642;          // "GRFB"
+    static final int VERSION = 1;
+    static final int TAM_CABECERA = 16;
+    static final int TAM_CONEXION = 2 * Integer.BYTES + 4 * Double.BYTES;
+
+    private static final double INFINITO = Double.MAX_VALUE;
+
+    private ArchivoGrafoBinario() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("a-binario") || args[0].equals("a-texto"))) {
+            System.err.println("Uso: java ArchivoGrafoBinario a-binario|a-texto origen destino");
+            return;
+        }
+        if (args[0].equals("a-binario")) {
+            convertirABinario(args[1], args[2]);
+        } else {
+            convertirATexto(args[1], args[2]);
+        }
+        System.out.println("Archivo convertido: " + args[2]);
+    }
+
+    /** Convierte un archivo con el formato de guategrafo.txt al formato binario. */
+    public static void convertirABinario(String archivoTexto, String archivoBinario) throws IOException {
+        GrafoFloyd grafo = new GrafoFloyd();
+        grafo.cargarDesdeArchivo(archivoTexto);
+        escribir(grafo, new File(archivoBinario));
+    }
+
+    /** Convierte un archivo binario al formato de guategrafo.txt. */
+    public static void convertirATexto(String archivoBinario, String archivoTexto) throws IOException {
+        GrafoFloyd grafo = new GrafoFloyd();
+        grafo.cargarDesdeBinario(archivoBinario);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(archivoTexto), StandardCharsets.UTF_8))) {
+            grafo.escribirConexiones(writer);
+        }
+    }
+
+    /** Escribe el estado actual del grafo en formato binario. */
+    public static void escribir(GrafoFloyd grafo, File archivo) throws IOException {
+        List<String> ciudades = grafo.getCiudades();
+        int n = ciudades.size();
+        int conexiones = grafo.contarConexiones(0);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(archivo), 1 << 16))) {
+            out.writeInt(MAGIA);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(conexiones);
+            for (String ciudad : ciudades) {
+                byte[] bytes = ciudad.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > 0xFFFF) {
+                    throw new IOException("Nombre de ciudad demasiado largo: " + ciudad);
+                }
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            // Misma regla que escribirConexiones: existe la conexión si tiene tiempo normal
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j || grafo.getPeso(0, i, j) == INFINITO) continue;
+                    out.writeInt(i);
+                    out.writeInt(j);
+                    for (int clima = 0; clima < 4; clima++) {
+                        out.writeDouble(grafo.getPeso(clima, i, j));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.*;
+
+/**
+ * Benchmark de aplicarFloydDisperso frente a aplicarFloyd según la densidad del grafo.
+ * Para cada densidad (conexiones por ciudad) informa el tiempo de ambas variantes,
+ * la aceleración obtenida y verifica que las distancias coinciden.
+ *
+ * Uso: java BenchmarkDensidad [ciudades] [repeticiones]
+ */
+public class BenchmarkDensidad {
+
+    public static void main(String[] args) throws IOException {
+        int ciudades = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int repeticiones = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        double[] conexionesPorCiudad = {0.5, 1, 2, 4, 8, 32};
+
+        System.out.printf("%12s %10s %14s %14s %12s%n",
+                "conex/ciudad", "densidad", "denso (ms)", "disperso (ms)", "aceleración");
+        for (double grado : conexionesPorCiudad) {
+            GrafoFloyd grafo = new GrafoFloyd();
+            grafo.cargarDesdeArchivo(GrafoAleatorio.crearArchivo(
+                    ciudades, (int) (ciudades * grado)).getPath());
+            int n = grafo.getNumCiudades();
+
+            // Calentamiento y verificación de resultados idénticos
+            ResultadoFloyd denso = grafo.aplicarFloyd(0);
+            ResultadoFloyd disperso = grafo.aplicarFloydDisperso(0);
+            for (int i = 0; i < n; i++) {
+                if (!java.util.Arrays.equals(denso.distancias[i], disperso.distancias[i])) {
+                    throw new IllegalStateException("Los resultados difieren en la fila " + i);
+                }
+            }
+
+            long tiempoDenso = 0;
+            long tiempoDisperso = 0;
+            for (int r = 0; r < repeticiones; r++) {
+                long inicio = System.nanoTime();
+                grafo.aplicarFloyd(0);
+                tiempoDenso += System.nanoTime() - inicio;
+                inicio = System.nanoTime();
+                grafo.aplicarFloydDisperso(0);
+                tiempoDisperso += System.nanoTime() - inicio;
+            }
+
+            System.out.printf("%12.1f %10.4f %14.2f %14.2f %11.2fx%n",
+                    grado, grado / Math.max(1, n - 1),
+                    tiempoDenso / 1e6 / repeticiones, tiempoDisperso / 1e6 / repeticiones,
+                    (double) tiempoDenso / tiempoDisperso);
+        }
+    }
+}
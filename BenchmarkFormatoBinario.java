@@ -0,0 +1,42 @@
+import java.io.*;
+
+/**
+ * Benchmark de carga: formato de texto (cargarDesdeArchivo) frente al formato
+ * binario (cargarDesdeBinario). Informa tamaño de archivo y tiempo medio de carga.
+ *
+ * Uso: java BenchmarkFormatoBinario [ciudades] [conexiones] [repeticiones]
+ */
+public class BenchmarkFormatoBinario {
+
+    public static void main(String[] args) throws IOException {
+        int ciudades = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int conexiones = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int repeticiones = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        File texto = GrafoAleatorio.crearArchivo(ciudades, conexiones);
+        File binario = File.createTempFile("benchmark", ".grfb");
+        binario.deleteOnExit();
+        ArchivoGrafoBinario.convertirABinario(texto.getPath(), binario.getPath());
+
+        // Calentamiento
+        for (int r = 0; r < 2; r++) {
+            new GrafoFloyd().cargarDesdeArchivo(texto.getPath());
+            new GrafoFloyd().cargarDesdeBinario(binario.getPath());
+        }
+
+        long tiempoTexto = 0;
+        long tiempoBinario = 0;
+        for (int r = 0; r < repeticiones; r++) {
+            long inicio = System.nanoTime();
+            new GrafoFloyd().cargarDesdeArchivo(texto.getPath());
+            tiempoTexto += System.nanoTime() - inicio;
+            inicio = System.nanoTime();
+            new GrafoFloyd().cargarDesdeBinario(binario.getPath());
+            tiempoBinario += System.nanoTime() - inicio;
+        }
+
+        System.out.printf("%-8s %14s %14s%n", "formato", "tamaño (bytes)", "carga (ms)");
+        System.out.printf("%-8s %14d %14.2f%n", "texto", texto.length(), tiempoTexto / 1e6 / repeticiones);
+        System.out.printf("%-8s %14d %14.2f%n", "binario", binario.length(), tiempoBinario / 1e6 / repeticiones);
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Benchmark del bucle de recálculo: compara aplicarFloyd, que reserva matrices nuevas
+ * en cada ejecución, con la variante que reutiliza un EspacioTrabajoFloyd. Informa los
+ * bytes reservados por iteración y la actividad del recolector de basura.
+ *
+ * Uso: java BenchmarkRecalculo [ciudades] [iteraciones]
+ */
+public class BenchmarkRecalculo {
+
+    public static void main(String[] args) throws IOException {
+        int ciudades = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int iteraciones = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        GrafoFloyd grafo = new GrafoFloyd();
+        grafo.cargarDesdeArchivo(GrafoAleatorio.crearArchivo(ciudades, ciudades * 4).getPath());
+        System.out.println("Ciudades: " + grafo.getNumCiudades() + ", iteraciones: " + iteraciones);
+
+        // Calentamiento para que ambas variantes estén compiladas
+        EspacioTrabajoFloyd espacio = new EspacioTrabajoFloyd();
+        for (int i = 0; i < 3; i++) {
+            grafo.aplicarFloyd(i % 4);
+            grafo.aplicarFloyd(i % 4, espacio);
+        }
+
+        medir("aplicarFloyd (reserva por ejecución)", iteraciones, clima -> grafo.aplicarFloyd(clima));
+        medir("aplicarFloyd con espacio de trabajo", iteraciones, clima -> grafo.aplicarFloyd(clima, espacio));
+    }
+
+    private interface Recalculo {
+        ResultadoFloyd ejecutar(int clima);
+    }
+
+    private static void medir(String nombre, int iteraciones, Recalculo recalculo) {
+        com.sun.management.ThreadMXBean hilos =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().getId();
+        long colecciones = totalColecciones();
+        long tiempoGc = totalTiempoGc();
+        long bytes = hilos.getThreadAllocatedBytes(hilo);
+        long inicio = System.nanoTime();
+
+        for (int i = 0; i < iteraciones; i++) {
+            recalculo.ejecutar(i % 4);
+        }
+
+        long nanos = System.nanoTime() - inicio;
+        long reservados = hilos.getThreadAllocatedBytes(hilo) - bytes;
+        System.out.printf("%-40s %10.2f ms/iter %14d bytes/iter  GC: %d colecciones, %d ms%n",
+                nombre, nanos / 1e6 / iteraciones, reservados / iteraciones,
+                totalColecciones() - colecciones, totalTiempoGc() - tiempoGc);
+    }
+
+    private static long totalColecciones() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long totalTiempoGc() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
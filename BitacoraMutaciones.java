@@ -0,0 +1,336 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Bitácora de mutaciones (write-ahead log) para el grafo.
+ * Cada conexión agregada o eliminada se anexa a un archivo de bitácora antes de
+ * aplicarse al grafo; fuera de un lote se sincroniza de inmediato y dentro de un lote
+ * todas sus mutaciones se sincronizan con un solo fsync al confirmarlo, de modo que
+ * nada se da por hecho antes de estar en disco. Al iniciar se carga la instantánea base
+ * y solo se reaplica la cola de la bitácora. La compactación escribe una nueva
+ * instantánea con el estado actual y vacía la bitácora.
+ *
+ * Formato de la bitácora (una mutación por línea):
+ *   secuencia A ciudad1 ciudad2 normal lluvia nieve tormenta
+ *   secuencia E ciudad1 ciudad2
+ * La instantánea base es la salida de GrafoFloyd.escribirConexiones (que declara
+ * todas las ciudades) precedida por la línea "# secuencia N", que cargarDesdeArchivo
+ * ignora por tener menos de 6 columnas. Un registro completo que no pueda reaplicarse
+ * indica una bitácora corrupta y detiene la recuperación.
+ */
+public class BitacoraMutaciones implements Closeable {
+
+    private static final String PREFIJO_SECUENCIA = "# secuencia ";
+
+    private final GrafoFloyd grafo;
+    private final File archivoBase;
+    private final File archivoBitacora;
+    private final int registrosPorCompactacion;   // Tamaño de bitácora que dispara la compactación
+
+    private FileChannel canal;
+    private final StringBuilder pendientes = new StringBuilder();
+    private int numPendientes;
+    private int registrosEnBitacora;
+    private long ultimaSecuencia;
+    private long longitudConfirmada;              // Bytes de la bitácora ya sincronizados
+
+    public BitacoraMutaciones(GrafoFloyd grafo, File archivoBase, File archivoBitacora,
+                              int registrosPorCompactacion) {
+        if (registrosPorCompactacion <= 0) {
+            throw new IllegalArgumentException("El umbral de compactación debe ser positivo.");
+        }
+        this.grafo = grafo;
+        this.archivoBase = archivoBase;
+        this.archivoBitacora = archivoBitacora;
+        this.registrosPorCompactacion = registrosPorCompactacion;
+    }
+
+    //----------------------------------------------------------------------
+    // RECUPERACIÓN AL INICIO
+    //----------------------------------------------------------------------
+
+    /**
+     * Carga la instantánea base (o el archivo inicial si aún no existe) y reaplica
+     * las mutaciones de la bitácora posteriores a ella. Solo se puede llamar una vez
+     * por apertura: tras close() se puede volver a recuperar.
+     *
+     * @return número de mutaciones reaplicadas
+     * @throws IOException si un registro completo está mal formado o no se puede reaplicar
+     */
+    public int recuperar(String archivoInicial) throws IOException {
+        if (canal != null) {
+            throw new IllegalStateException("La bitácora ya está abierta; ciérrela antes de recuperar de nuevo.");
+        }
+        registrosEnBitacora = 0;
+        long secuenciaBase = 0;
+        if (archivoBase.exists()) {
+            secuenciaBase = leerSecuenciaBase();
+            grafo.cargarDesdeArchivo(archivoBase.getPath());
+        } else {
+            grafo.cargarDesdeArchivo(archivoInicial);
+        }
+        ultimaSecuencia = secuenciaBase;
+
+        // Solo cuentan los registros terminados en salto de línea; lo que siga al último
+        // es un registro a medias de una caída durante la escritura y se descarta
+        int reaplicadas = 0;
+        int longitudValida = 0;
+        if (archivoBitacora.exists()) {
+            byte[] contenido = Files.readAllBytes(archivoBitacora.toPath());
+            int fin;
+            while ((fin = indiceSaltoLinea(contenido, longitudValida)) >= 0) {
+                String linea = new String(contenido, longitudValida, fin - longitudValida, StandardCharsets.UTF_8);
+                long secuencia = reaplicar(linea, secuenciaBase);
+                longitudValida = fin + 1;
+                registrosEnBitacora++;
+                if (secuencia > secuenciaBase) {
+                    reaplicadas++;
+                    ultimaSecuencia = secuencia;
+                }
+            }
+        }
+
+        boolean nueva = !archivoBitacora.exists();
+        canal = FileChannel.open(archivoBitacora.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        canal.truncate(longitudValida);
+        canal.position(longitudValida);
+        longitudConfirmada = longitudValida;
+        if (nueva) {
+            sincronizarDirectorio(archivoBitacora);  // Que la bitácora recién creada no desaparezca
+        }
+        return reaplicadas;
+    }
+
+    private static int indiceSaltoLinea(byte[] contenido, int desde) {
+        for (int i = desde; i < contenido.length; i++) {
+            if (contenido[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long leerSecuenciaBase() throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(archivoBase), StandardCharsets.UTF_8))) {
+            String primera = br.readLine();
+            if (primera != null && primera.startsWith(PREFIJO_SECUENCIA)) {
+                return Long.parseLong(primera.substring(PREFIJO_SECUENCIA.length()).trim());
+            }
+        }
+        return 0;
+    }
+
+    // Reaplica un registro completo y devuelve su secuencia; uno mal formado o que no se
+    // puede aplicar indica una bitácora corrupta
+    private long reaplicar(String linea, long secuenciaBase) throws IOException {
+        String[] partes = linea.trim().split("\\s+");
+        try {
+            long secuencia = Long.parseLong(partes[0]);
+            // Las conexiones de una ciudad consigo misma (registradas antes de que se
+            // rechazaran) se ignoran, igual que al cargar el archivo base
+            boolean aplicar = secuencia > secuenciaBase && partes.length >= 4 && !partes[2].equals(partes[3]);
+            if (partes.length == 8 && partes[1].equals("A")) {
+                double normal = Double.parseDouble(partes[4]);
+                double lluvia = Double.parseDouble(partes[5]);
+                double nieve = Double.parseDouble(partes[6]);
+                double tormenta = Double.parseDouble(partes[7]);
+                if (!aplicar || grafo.agregarConexion(partes[2], partes[3], normal, lluvia, nieve, tormenta)) {
+                    return secuencia;
+                }
+            } else if (partes.length == 4 && partes[1].equals("E")) {
+                if (!aplicar || grafo.eliminarConexion(partes[2], partes[3])) {
+                    return secuencia;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo junto con los demás registros no válidos
+        }
+        throw new IOException("Registro no válido en la bitácora " + archivoBitacora + ": " + linea);
+    }
+
+    //----------------------------------------------------------------------
+    // REGISTRO DE MUTACIONES
+    //----------------------------------------------------------------------
+
+    /**
+     * Registra la conexión en la bitácora y después la agrega al grafo. Fuera de un
+     * lote el registro ya está en disco al volver.
+     */
+    public boolean agregarConexion(String ciudad1, String ciudad2, double tiempoNormal,
+                                   double tiempoLluvia, double tiempoNieve,
+                                   double tiempoTormenta) throws IOException {
+        if (!grafo.validarConexion(ciudad1, ciudad2)) {
+            return false;
+        }
+        registrar("A " + ciudad1 + " " + ciudad2 + " " + tiempoNormal + " " + tiempoLluvia
+                + " " + tiempoNieve + " " + tiempoTormenta);
+        grafo.agregarConexion(ciudad1, ciudad2, tiempoNormal, tiempoLluvia, tiempoNieve, tiempoTormenta);
+        compactarSiCorresponde();
+        return true;
+    }
+
+    /**
+     * Registra la eliminación en la bitácora y después la aplica al grafo. Fuera de un
+     * lote el registro ya está en disco al volver.
+     */
+    public boolean eliminarConexion(String ciudad1, String ciudad2) throws IOException {
+        if (!grafo.validarConexion(ciudad1, ciudad2)) {
+            return false;
+        }
+        registrar("E " + ciudad1 + " " + ciudad2);
+        grafo.eliminarConexion(ciudad1, ciudad2);
+        compactarSiCorresponde();
+        return true;
+    }
+
+
+    private void registrar(String mutacion) throws IOException {
+        if (canal == null) {
+            throw new IllegalStateException("Debe llamar a recuperar() antes de registrar mutaciones.");
+        }
+        ultimaSecuencia++;
+        pendientes.append(ultimaSecuencia).append(' ').append(mutacion).append('\n');
+        numPendientes++;
+        registrosEnBitacora++;
+        if (!grafo.enLote()) {
+            sincronizar();
+        }
+    }
+
+    // La instantánea debe incluir todo lo registrado hasta su secuencia, así que solo se
+    // compacta con las mutaciones ya aplicadas y fuera de un lote
+    private void compactarSiCorresponde() throws IOException {
+        if (!grafo.enLote() && registrosEnBitacora >= registrosPorCompactacion) {
+            compactar();
+        }
+    }
+
+    /**
+     * Escribe las mutaciones pendientes y fuerza su llegada a disco con un solo fsync.
+     * Si falla, las descarta y deja la bitácora como estaba tras el último fsync.
+     */
+    public void sincronizar() throws IOException {
+        if (numPendientes == 0) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(pendientes.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(false);
+        } catch (IOException e) {
+            descartarPendientes();
+            throw e;
+        }
+        longitudConfirmada = canal.position();
+        pendientes.setLength(0);
+        numPendientes = 0;
+    }
+
+    private void descartarPendientes() {
+        ultimaSecuencia -= numPendientes;
+        registrosEnBitacora -= numPendientes;
+        pendientes.setLength(0);
+        numPendientes = 0;
+        try {
+            canal.truncate(longitudConfirmada);
+            canal.position(longitudConfirmada);
+        } catch (IOException e) {
+            // Un registro a medias no termina en salto de línea y se descarta al recuperar
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // LOTES
+    //----------------------------------------------------------------------
+
+    /** Abre un lote en el grafo; sus mutaciones se sincronizan juntas al confirmarlo. */
+    public void iniciarLote() {
+        grafo.iniciarLote();
+    }
+
+    /**
+     * Sincroniza todas las mutaciones del lote con un solo fsync y solo entonces las
+     * aplica al grafo. Si la escritura falla, el lote se descarta completo y el grafo
+     * queda como antes de abrirlo. Si el lote llevó la bitácora al umbral, la
+     * compactación se hace aquí, con el lote ya aplicado, y nunca a mitad de él.
+     */
+    public CambiosLote confirmarLote() throws IOException {
+        try {
+            sincronizar();
+        } catch (IOException e) {
+            grafo.descartarLote();
+            throw e;
+        }
+        CambiosLote cambios = grafo.confirmarLote();
+        compactarSiCorresponde();
+        return cambios;
+    }
+
+    /** Descarta el lote abierto sin escribir ni aplicar ninguna de sus mutaciones. */
+    public void descartarLote() {
+        descartarPendientes();
+        grafo.descartarLote();
+    }
+
+    //----------------------------------------------------------------------
+    // COMPACTACIÓN
+    //----------------------------------------------------------------------
+
+    /**
+     * Escribe una nueva instantánea base con el estado actual y vacía la bitácora.
+     * La instantánea se reemplaza de forma atómica y el directorio se sincroniza antes de
+     * truncar la bitácora, para que el truncado nunca llegue a disco sin el cambio de
+     * nombre; si el proceso cae antes de truncar, sus registros quedan por debajo de la
+     * secuencia base y se ignoran.
+     * No se permite con un lote abierto: sus mutaciones aún no están en el grafo.
+     */
+    public void compactar() throws IOException {
+        if (grafo.enLote()) {
+            throw new IllegalStateException("No se puede compactar con un lote de mutaciones abierto.");
+        }
+        sincronizar();
+        File temporal = new File(archivoBase.getPath() + ".tmp");
+        try (FileOutputStream salida = new FileOutputStream(temporal);
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8))) {
+            writer.println(PREFIJO_SECUENCIA + ultimaSecuencia);
+            grafo.escribirConexiones(writer);
+            writer.flush();
+            salida.getFD().sync();
+        }
+        Files.move(temporal.toPath(), archivoBase.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio(archivoBase);
+        canal.truncate(0);
+        canal.position(0);
+        canal.force(true);
+        registrosEnBitacora = 0;
+    }
+
+    // Lleva a disco las entradas del directorio del archivo (creación o cambio de nombre)
+    private static void sincronizarDirectorio(File archivo) throws IOException {
+        try (FileChannel directorio = FileChannel.open(archivo.getAbsoluteFile().getParentFile().toPath(),
+                StandardOpenOption.READ)) {
+            directorio.force(true);
+        }
+    }
+
+    public long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (canal != null) {
+            sincronizar();
+            canal.close();
+            canal = null;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caché acotada y concurrente de rutas resueltas, por (origen, destino, clima).
+ *
+ * Las claves se reparten entre segmentos con su propio candado; cada segmento aplica
+ * LRU segmentado: las entradas nuevas entran a un tramo de prueba y solo pasan al tramo
+ * protegido si se vuelven a pedir, así un recorrido de rutas únicas no desaloja las
+ * rutas populares. Cada entrada lleva la versión del grafo con la que se calculó y se
+ * descarta al consultarla si el grafo cambió, sin vaciar toda la caché.
+ */
+public class CacheRutas {
+
+    private static final double FRACCION_PROTEGIDA = 0.8;
+
+    private final Segmento[] segmentos;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder obsoletas = new LongAdder();   // Fallos por versión vencida
+    private final LongAdder desalojos = new LongAdder();
+
+    private static final class Clave {
+        final String origen;
+        final String destino;
+        final int tipoClima;
+
+        Clave(String origen, String destino, int tipoClima) {
+            this.origen = origen;
+            this.destino = destino;
+            this.tipoClima = tipoClima;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Clave)) return false;
+            Clave otra = (Clave) o;
+            return tipoClima == otra.tipoClima && origen.equals(otra.origen) && destino.equals(otra.destino);
+        }
+
+        @Override
+        public int hashCode() {
+            return (origen.hashCode() * 31 + destino.hashCode()) * 31 + tipoClima;
+        }
+    }
+
+    /** LRU segmentado protegido por el monitor del propio segmento. */
+    private final class Segmento {
+        private final int capacidadPrueba;
+        private final int capacidadProtegida;
+        private final LinkedHashMap<Clave, RutaCalculada> prueba = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Clave, RutaCalculada> protegido = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segmento(int capacidad) {
+            capacidadProtegida = Math.max(1, (int) (capacidad * FRACCION_PROTEGIDA));
+            capacidadPrueba = Math.max(1, capacidad - capacidadProtegida);
+        }
+
+        synchronized RutaCalculada obtener(Clave clave, long version) {
+            RutaCalculada ruta = protegido.get(clave);
+            if (ruta == null) {
+                ruta = prueba.remove(clave);
+                if (ruta == null) {
+                    return null;
+                }
+                if (ruta.version == version) {
+                    promover(clave, ruta);
+                }
+            }
+            if (ruta.version != version) {
+                protegido.remove(clave);
+                obsoletas.increment();
+                return null;
+            }
+            return ruta;
+        }
+
+        synchronized void guardar(Clave clave, RutaCalculada ruta) {
+            if (protegido.containsKey(clave)) {
+                protegido.put(clave, ruta);
+                return;
+            }
+            prueba.put(clave, ruta);
+            recortar(prueba, capacidadPrueba);
+        }
+
+        // Al pasar al tramo protegido, su entrada más antigua vuelve al de prueba
+        private void promover(Clave clave, RutaCalculada ruta) {
+            protegido.put(clave, ruta);
+            if (protegido.size() > capacidadProtegida) {
+                Iterator<Map.Entry<Clave, RutaCalculada>> it = protegido.entrySet().iterator();
+                Map.Entry<Clave, RutaCalculada> degradada = it.next();
+                it.remove();
+                prueba.put(degradada.getKey(), degradada.getValue());
+                recortar(prueba, capacidadPrueba);
+            }
+        }
+
+        private void recortar(LinkedHashMap<Clave, RutaCalculada> tramo, int capacidad) {
+            Iterator<Clave> it = tramo.keySet().iterator();
+            while (tramo.size() > capacidad) {
+                it.next();
+                it.remove();
+                desalojos.increment();
+            }
+        }
+
+        synchronized int tamano() {
+            return prueba.size() + protegido.size();
+        }
+    }
+
+    /**
+     * @param capacidad   número máximo aproximado de rutas (se reparte entre segmentos)
+     * @param concurrencia número de segmentos con candado independiente
+     */
+    public CacheRutas(int capacidad, int concurrencia) {
+        if (capacidad <= 0 || concurrencia <= 0) {
+            throw new IllegalArgumentException("La capacidad y la concurrencia deben ser positivas.");
+        }
+        int numSegmentos = Math.min(concurrencia, capacidad);
+        segmentos = new Segmento[numSegmentos];
+        for (int s = 0; s < numSegmentos; s++) {
+            segmentos[s] = new Segmento(Math.max(2, capacidad / numSegmentos));
+        }
+    }
+
+    /**
+     * Devuelve la ruta guardada si se calculó con la versión actual del grafo; si no,
+     * la calcula con el cargador (fuera del candado) y la guarda.
+     */
+    public RutaCalculada obtener(String origen, String destino, int tipoClima, long versionActual,
+                                 Supplier<RutaCalculada> cargador) {
+        Clave clave = new Clave(origen, destino, tipoClima);
+        Segmento segmento = segmento(clave);
+        RutaCalculada ruta = segmento.obtener(clave, versionActual);
+        if (ruta != null) {
+            aciertos.increment();
+            return ruta;
+        }
+        fallos.increment();
+        ruta = cargador.get();
+        if (ruta.version == versionActual) {
+            segmento.guardar(clave, ruta);
+        }
+        return ruta;
+    }
+
+    private Segmento segmento(Clave clave) {
+        int h = clave.hashCode();
+        h ^= (h >>> 16);
+        return segmentos[Math.floorMod(h, segmentos.length)];
+    }
+
+    //----------------------------------------------------------------------
+    // MÉTRICAS
+    //----------------------------------------------------------------------
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    /** Fallos debidos a entradas calculadas con una versión anterior del grafo. */
+    public long getObsoletas() {
+        return obsoletas.sum();
+    }
+
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    public double getTasaAciertos() {
+        long total = getAciertos() + getFallos();
+        return total == 0 ? 0 : (double) getAciertos() / total;
+    }
+
+    public int getTamano() {
+        int total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.tamano();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Caché de rutas: %d entradas, aciertos %d, fallos %d (obsoletas %d), "
+                        + "desalojos %d, tasa de aciertos %.1f%%",
+                getTamano(), getAciertos(), getFallos(), getObsoletas(), getDesalojos(),
+                getTasaAciertos() * 100);
+    }
+}
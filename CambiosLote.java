@@ -0,0 +1,66 @@
+import java.util.*;
+
+/**
+ * Cambios efectivos de un lote de mutaciones confirmado con GrafoFloyd.confirmarLote.
+ * Cada conexión aparece una sola vez con sus tiempos antes y después del lote; las
+ * mutaciones que se anulan entre sí dentro del lote no aparecen.
+ */
+public class CambiosLote {
+
+    /** Cambio de una conexión dirigida en los cuatro climas. */
+    public static class Cambio {
+        public final int origen;
+        public final int destino;
+        public final double[] anterior;          // Tiempos por clima antes del lote
+        public final double[] nuevo;             // Tiempos por clima después del lote
+
+        Cambio(int origen, int destino, double[] anterior, double[] nuevo) {
+            this.origen = origen;
+            this.destino = destino;
+            this.anterior = anterior;
+            this.nuevo = nuevo;
+        }
+    }
+
+    private final List<Cambio> cambios;
+
+    CambiosLote(List<Cambio> cambios) {
+        this.cambios = Collections.unmodifiableList(cambios);
+    }
+
+    public List<Cambio> getCambios() {
+        return cambios;
+    }
+
+    public int getNumCambios() {
+        return cambios.size();
+    }
+
+    /** Cambios que modifican el tiempo del clima indicado. */
+    public List<Cambio> cambiosDeClima(int tipoClima) {
+        List<Cambio> resultado = new ArrayList<>();
+        for (Cambio cambio : cambios) {
+            if (cambio.anterior[tipoClima] != cambio.nuevo[tipoClima]) {
+                resultado.add(cambio);
+            }
+        }
+        return resultado;
+    }
+
+    public boolean afectaClima(int tipoClima) {
+        return !cambiosDeClima(tipoClima).isEmpty();
+    }
+
+    /**
+     * true si en el clima indicado ningún tiempo aumentó (solo conexiones nuevas o más
+     * rápidas). Solo en ese caso las rutas se pueden actualizar sin recalcular todo.
+     */
+    public boolean soloReducciones(int tipoClima) {
+        for (Cambio cambio : cambios) {
+            if (cambio.nuevo[tipoClima] > cambio.anterior[tipoClima]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Coordinador del Floyd-Warshall distribuido entre procesos TrabajadorFloyd.
+ * La matriz se reparte por bloques de filas (el bloque b pertenece al trabajador
+ * b % W). En cada ronda el dueño del bloque pivote calcula sus filas, el coordinador
+ * las difunde al resto y cada trabajador actualiza sus propias filas; como el reparto
+ * es por filas, las teselas de la columna pivote ya son locales y no viajan por la red.
+ *
+ * El coordinador conserva los bloques pivote de cada ronda para resincronizar a un
+ * trabajador reiniciado: le reenvía sus filas iniciales y le reaplica las rondas previas.
+ * Un trabajador que deja de responder (colgado, no solo caído) se detecta por el tiempo
+ * máximo de espera de cada respuesta y se trata igual que uno reiniciado.
+ *
+ * Uso: java CoordinadorFloyd archivo clima tamBloque host:puerto [host:puerto ...]
+ */
+public class CoordinadorFloyd {
+
+    private static final double INFINITO = Double.MAX_VALUE;
+    private static final int ESPERA_RESPUESTA_MS = 60_000;   // Por defecto, de sobra para una ronda
+
+    private final List<InetSocketAddress> direcciones;
+    private final int tamBloque;
+    private final int intentosReconexion;
+    private final int esperaRespuestaMs;
+    private final List<EstadisticaRonda> estadisticas = new ArrayList<>();
+
+    // Estado del cálculo en curso
+    private double[][] pesos;
+    private int n;
+    private int numBloques;
+    private Conexion[] conexiones;
+    private double[][][] pivotesDistancias;       // ronda -> filas del bloque pivote
+    private int[][][] pivotesSiguiente;
+    private int reenviosRonda;
+
+    /** Tiempos de una ronda medidos desde el coordinador. */
+    public static class EstadisticaRonda {
+        public final int ronda;
+        public final long nanosComputo;           // Pivote + la actualización más lenta
+        public final long nanosComunicacion;      // Resto del tiempo de la ronda
+        public final int reenvios;                // Trabajadores resincronizados en la ronda
+
+        EstadisticaRonda(int ronda, long nanosComputo, long nanosComunicacion, int reenvios) {
+            this.ronda = ronda;
+            this.nanosComputo = nanosComputo;
+            this.nanosComunicacion = nanosComunicacion;
+            this.reenvios = reenvios;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Ronda %d: cómputo %.3f ms, comunicación %.3f ms, reenvíos %d",
+                    ronda, nanosComputo / 1e6, nanosComunicacion / 1e6, reenvios);
+        }
+    }
+
+    private static class Conexion {
+        Socket socket;
+        DataInputStream in;
+        DataOutputStream out;
+
+        void cerrar() {
+            try {
+                if (socket != null) socket.close();
+            } catch (IOException e) {
+                // Ya estaba cerrada
+            }
+        }
+    }
+
+    private interface Operacion<T> {
+        T ejecutar(Conexion conexion) throws IOException;
+    }
+
+    public CoordinadorFloyd(List<InetSocketAddress> direcciones, int tamBloque, int intentosReconexion) {
+        this(direcciones, tamBloque, intentosReconexion, ESPERA_RESPUESTA_MS);
+    }
+
+    /**
+     * @param esperaRespuestaMs tiempo máximo de espera de cada respuesta de un trabajador;
+     *                          debe cubrir la ronda más lenta
+     */
+    public CoordinadorFloyd(List<InetSocketAddress> direcciones, int tamBloque, int intentosReconexion,
+                            int esperaRespuestaMs) {
+        if (direcciones.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un trabajador.");
+        }
+        if (tamBloque <= 0) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser positivo.");
+        }
+        if (esperaRespuestaMs <= 0) {
+            throw new IllegalArgumentException("El tiempo de espera debe ser positivo.");
+        }
+        this.direcciones = new ArrayList<>(direcciones);
+        this.tamBloque = tamBloque;
+        this.intentosReconexion = intentosReconexion;
+        this.esperaRespuestaMs = esperaRespuestaMs;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Uso: java CoordinadorFloyd archivo clima tamBloque host:puerto [host:puerto ...]");
+            return;
+        }
+        List<InetSocketAddress> direcciones = new ArrayList<>();
+        for (int a = 3; a < args.length; a++) {
+            String[] partes = args[a].split(":");
+            direcciones.add(new InetSocketAddress(partes[0], Integer.parseInt(partes[1])));
+        }
+        GrafoFloyd grafo = new GrafoFloyd();
+        grafo.cargarDesdeArchivo(args[0]);
+        CoordinadorFloyd coordinador = new CoordinadorFloyd(direcciones, Integer.parseInt(args[2]), 10);
+        ResultadoFloyd resultado = grafo.aplicarFloydDistribuido(Integer.parseInt(args[1]), coordinador);
+        for (EstadisticaRonda ronda : coordinador.getEstadisticas()) {
+            System.out.println(ronda);
+        }
+        System.out.println("Centro del grafo: " + grafo.calcularCentro(resultado.distancias));
+    }
+
+    public List<EstadisticaRonda> getEstadisticas() {
+        return new ArrayList<>(estadisticas);
+    }
+
+    /** Calcula todas las rutas más cortas repartiendo el trabajo entre los trabajadores. */
+    public ResultadoFloyd calcular(double[][] pesos, int n) throws IOException {
+        return calcular(pesos, n, null);
+    }
+
+    /**
+     * Como calcular(pesos, n), avisando al progreso (si no es null) al terminar cada ronda,
+     * con los pivotes cubiertos hasta ese momento; si pide detenerse lanza
+     * CancellationException.
+     */
+    public ResultadoFloyd calcular(double[][] pesos, int n, ProgresoFloyd progreso) throws IOException {
+        this.pesos = pesos;
+        this.n = n;
+        this.numBloques = (n + tamBloque - 1) / tamBloque;
+        this.pivotesDistancias = new double[numBloques][][];
+        this.pivotesSiguiente = new int[numBloques][][];
+        estadisticas.clear();
+        if (n == 0) {
+            return new ResultadoFloyd(new double[0][0], new int[0][0]);
+        }
+
+        conexiones = new Conexion[direcciones.size()];
+        try {
+            for (int w = 0; w < conexiones.length; w++) {
+                conexiones[w] = conectar(w);
+                iniciar(conexiones[w], w);
+            }
+            for (int kb = 0; kb < numBloques; kb++) {
+                ejecutarRonda(kb);
+                int pivotes = Math.min((kb + 1) * tamBloque, n);
+                if (progreso != null && !progreso.pivoteCompletado(pivotes, n)) {
+                    throw new CancellationException("Floyd distribuido detenido tras " + pivotes + " de " + n + " pivotes");
+                }
+            }
+            return recoger();
+        } finally {
+            for (Conexion conexion : conexiones) {
+                if (conexion == null) continue;
+                try {
+                    conexion.out.writeInt(TrabajadorFloyd.CMD_FIN);
+                    conexion.out.flush();
+                } catch (IOException e) {
+                    // El trabajador ya no está; nada que cerrar de su lado
+                }
+                conexion.cerrar();
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // RONDAS
+    //----------------------------------------------------------------------
+    private void ejecutarRonda(int kb) throws IOException {
+        long inicio = System.nanoTime();
+        reenviosRonda = 0;
+        int dueno = kb % conexiones.length;
+
+        // El dueño calcula el bloque pivote
+        long nanosPivote = conReintento(dueno, kb, c -> {
+            c.out.writeInt(TrabajadorFloyd.CMD_PIVOTE);
+            c.out.writeInt(kb);
+            c.out.flush();
+            long nanos = c.in.readLong();
+            double[][] d = new double[filasDeBloque(kb)][n];
+            int[][] s = new int[filasDeBloque(kb)][n];
+            TrabajadorFloyd.leerFilas(c.in, d, s);
+            pivotesDistancias[kb] = d;
+            pivotesSiguiente[kb] = s;
+            return nanos;
+        });
+
+        // Difusión: primero se envía a todos para que calculen en paralelo
+        boolean[] fallo = new boolean[conexiones.length];
+        for (int w = 0; w < conexiones.length; w++) {
+            if (w == dueno || !tieneBloques(w)) continue;
+            try {
+                enviarPivote(conexiones[w], kb);
+            } catch (IOException e) {
+                fallo[w] = true;
+            }
+        }
+        long nanosActualizacion = 0;
+        for (int w = 0; w < conexiones.length; w++) {
+            if (w == dueno || !tieneBloques(w)) continue;
+            long nanos;
+            if (!fallo[w]) {
+                try {
+                    nanos = conexiones[w].in.readLong();
+                    nanosActualizacion = Math.max(nanosActualizacion, nanos);
+                    continue;
+                } catch (IOException e) {
+                    // Se reintenta abajo tras resincronizar
+                }
+            }
+            nanos = conReintento(w, kb, c -> {
+                enviarPivote(c, kb);
+                return c.in.readLong();
+            });
+            nanosActualizacion = Math.max(nanosActualizacion, nanos);
+        }
+
+        long total = System.nanoTime() - inicio;
+        long computo = nanosPivote + nanosActualizacion;
+        estadisticas.add(new EstadisticaRonda(kb, computo, Math.max(0, total - computo), reenviosRonda));
+    }
+
+    private void enviarPivote(Conexion c, int ronda) throws IOException {
+        c.out.writeInt(TrabajadorFloyd.CMD_ACTUALIZAR);
+        c.out.writeInt(ronda);
+        TrabajadorFloyd.escribirFilas(c.out, pivotesDistancias[ronda], pivotesSiguiente[ronda]);
+        c.out.flush();
+    }
+
+    private ResultadoFloyd recoger() throws IOException {
+        double[][] distancias = new double[n][];
+        int[][] siguiente = new int[n][];
+        for (int w = 0; w < conexiones.length; w++) {
+            if (!tieneBloques(w)) continue;
+            conReintento(w, numBloques, c -> {
+                c.out.writeInt(TrabajadorFloyd.CMD_RECOGER);
+                c.out.flush();
+                int cantidad = c.in.readInt();
+                for (int b = 0; b < cantidad; b++) {
+                    int bloque = c.in.readInt();
+                    double[][] d = new double[filasDeBloque(bloque)][n];
+                    int[][] s = new int[filasDeBloque(bloque)][n];
+                    TrabajadorFloyd.leerFilas(c.in, d, s);
+                    for (int f = 0; f < d.length; f++) {
+                        distancias[bloque * tamBloque + f] = d[f];
+                        siguiente[bloque * tamBloque + f] = s[f];
+                    }
+                }
+                return cantidad;
+            });
+        }
+        return new ResultadoFloyd(distancias, siguiente);
+    }
+
+    //----------------------------------------------------------------------
+    // CONEXIÓN Y RESINCRONIZACIÓN DE TRABAJADORES
+    //----------------------------------------------------------------------
+
+    // Ejecuta la operación y, si el trabajador se cae, lo resincroniza hasta la ronda
+    // indicada (sin incluirla) y la vuelve a intentar
+    private <T> T conReintento(int w, int rondasCompletas, Operacion<T> operacion) throws IOException {
+        IOException ultimo = null;
+        for (int intento = 0; intento <= intentosReconexion; intento++) {
+            try {
+                if (ultimo != null) {
+                    resincronizar(w, rondasCompletas);
+                }
+                return operacion.ejecutar(conexiones[w]);
+            } catch (IOException e) {
+                ultimo = e;
+            }
+        }
+        throw new IOException("El trabajador " + direcciones.get(w) + " no responde", ultimo);
+    }
+
+    private void resincronizar(int w, int rondasCompletas) throws IOException {
+        reenviosRonda++;
+        conexiones[w].cerrar();
+        conexiones[w] = conectar(w);
+        iniciar(conexiones[w], w);
+        for (int r = 0; r < rondasCompletas; r++) {
+            enviarPivote(conexiones[w], r);
+            conexiones[w].in.readLong();
+        }
+    }
+
+    private Conexion conectar(int w) throws IOException {
+        IOException ultimo = null;
+        for (int intento = 0; intento <= intentosReconexion; intento++) {
+            try {
+                Conexion c = new Conexion();
+                c.socket = new Socket();
+                c.socket.connect(direcciones.get(w), esperaRespuestaMs);
+                c.socket.setTcpNoDelay(true);
+                c.socket.setSoTimeout(esperaRespuestaMs);  // Un trabajador colgado no bloquea la ronda
+                c.in = new DataInputStream(new BufferedInputStream(c.socket.getInputStream()));
+                c.out = new DataOutputStream(new BufferedOutputStream(c.socket.getOutputStream()));
+                return c;
+            } catch (IOException e) {
+                ultimo = e;
+                try {
+                    Thread.sleep(100L * (intento + 1));  // El trabajador puede estar reiniciando
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Conexión interrumpida");
+                }
+            }
+        }
+        throw new IOException("No se pudo conectar con " + direcciones.get(w), ultimo);
+    }
+
+    // Envía al trabajador sus bloques de filas con los pesos originales
+    private void iniciar(Conexion c, int w) throws IOException {
+        List<Integer> propios = new ArrayList<>();
+        for (int b = w; b < numBloques; b += conexiones.length) {
+            propios.add(b);
+        }
+        c.out.writeInt(TrabajadorFloyd.CMD_INICIAR);
+        c.out.writeInt(n);
+        c.out.writeInt(tamBloque);
+        c.out.writeInt(propios.size());
+        for (int bloque : propios) {
+            int filas = filasDeBloque(bloque);
+            double[][] d = new double[filas][];
+            int[][] s = new int[filas][n];
+            for (int f = 0; f < filas; f++) {
+                int i = bloque * tamBloque + f;
+                d[f] = pesos[i];
+                for (int j = 0; j < n; j++) {
+                    s[f][j] = (i != j && pesos[i][j] != INFINITO) ? j : -1;
+                }
+            }
+            c.out.writeInt(bloque);
+            TrabajadorFloyd.escribirFilas(c.out, d, s);
+        }
+        c.out.flush();
+        if (c.in.readInt() != TrabajadorFloyd.CMD_INICIAR) {
+            throw new IOException("Respuesta inesperada del trabajador");
+        }
+    }
+
+    private boolean tieneBloques(int w) {
+        return w < numBloques;
+    }
+
+    private int filasDeBloque(int bloque) {
+        return Math.min(tamBloque, n - bloque * tamBloque);
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Espacio de trabajo para recalcular Floyd sin reservar matrices en cada ejecución.
+ * Mantiene un anillo de buffers de resultado: cada recálculo escribe en el buffer más
+ * antiguo y luego lo publica, de modo que el resultado publicado (y los anteriores,
+ * hasta numBuffers - 1) sigue siendo válido mientras se calcula el siguiente.
+ *
+ * Pensado para un único hilo que recalcula y cualquier número de hilos que leen
+ * el resultado publicado.
+ */
+public class EspacioTrabajoFloyd {
+
+    private final ResultadoFloyd[] buffers;
+    private int siguienteBuffer;                  // Próximo buffer a sobrescribir
+    private volatile ResultadoFloyd publicado;
+
+    public EspacioTrabajoFloyd() {
+        this(2);  // Doble buffer: publicado + en cálculo
+    }
+
+    public EspacioTrabajoFloyd(int numBuffers) {
+        if (numBuffers < 2) {
+            throw new IllegalArgumentException("Se necesitan al menos 2 buffers para publicar sin bloqueo.");
+        }
+        buffers = new ResultadoFloyd[numBuffers];
+    }
+
+    /**
+     * Devuelve el buffer donde se calculará el siguiente resultado. Solo reserva memoria
+     * la primera vez o cuando cambia el número de ciudades. Nunca devuelve el buffer
+     * publicado, aunque un cálculo anterior se haya cancelado sin publicar.
+     */
+    ResultadoFloyd reservar(int numCiudades) {
+        if (buffers[siguienteBuffer] != null && buffers[siguienteBuffer] == publicado) {
+            siguienteBuffer = (siguienteBuffer + 1) % buffers.length;
+        }
+        ResultadoFloyd buffer = buffers[siguienteBuffer];
+        if (buffer == null || buffer.distancias.length != numCiudades) {
+            buffer = new ResultadoFloyd(new double[numCiudades][numCiudades], new int[numCiudades][numCiudades]);
+            buffers[siguienteBuffer] = buffer;
+        }
+        siguienteBuffer = (siguienteBuffer + 1) % buffers.length;
+        return buffer;
+    }
+
+    void publicar(ResultadoFloyd resultado) {
+        publicado = resultado;
+    }
+
+    /** Último resultado completo, o null si todavía no se ha calculado ninguno. */
+    public ResultadoFloyd getPublicado() {
+        return publicado;
+    }
+}
@@ -0,0 +1,477 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Floyd-Warshall por bloques fuera de memoria.
+ * Las matrices de distancias y de rutas se guardan en un archivo dividido en teselas
+ * de tamBloque x tamBloque; solo un número acotado de teselas vive en memoria a la vez
+ * y la siguiente tesela a procesar se lee por adelantado en un hilo aparte.
+ *
+ * Formato del archivo: cabecera (MAGIA, n, tamBloque) seguida de las teselas en orden
+ * fila-columna; cada tesela guarda primero sus distancias (double) y luego su parte de
+ * la matriz siguiente (int). ResultadoFloydDisco lee este mismo formato.
+ *
+ * Los pesos nunca se copian a una matriz n x n: las teselas iniciales se llenan celda
+ * a celda desde una FuentePesos o, con calcularDesdeBinario, leyendo las conexiones de
+ * un archivo de ArchivoGrafoBinario una franja de filas de teselas a la vez.
+ *
+ * Uso: java FloydEnDisco grafo.bin clima salida tamBloque teselasEnMemoria
+ */
+public class FloydEnDisco implements Closeable {
+
+    static final int MAGIA = 0x464C4459;          // "FLDY"
+    static final int TAM_CABECERA = 12;           // MAGIA + n + tamBloque
+    private static final double INFINITO = Double.MAX_VALUE;
+
+    private final File archivo;
+    private final FileChannel canal;
+    private final int n;
+    private final int tamBloque;
+    private final int numBloques;
+    private final int bytesPorTesela;
+    private final int capacidad;                  // Máximo de teselas en memoria
+
+    private final LinkedHashMap<Long, Tesela> pool;              // Orden de acceso (LRU)
+    private final Map<Long, Future<Tesela>> pendientes = new HashMap<>();
+    private final ExecutorService lectorAnticipado;
+
+    /** Peso de la conexión de i a j (INFINITO = sin conexión, 0 en la diagonal). */
+    @FunctionalInterface
+    public interface FuentePesos {
+        double peso(int i, int j);
+    }
+
+    /** Bloque de la matriz cargado en memoria. */
+    private static class Tesela {
+        final int fila;
+        final int columna;
+        final double[] distancias;
+        final int[] siguiente;
+        boolean sucia;
+
+        Tesela(int fila, int columna, int tamBloque) {
+            this.fila = fila;
+            this.columna = columna;
+            this.distancias = new double[tamBloque * tamBloque];
+            this.siguiente = new int[tamBloque * tamBloque];
+        }
+    }
+
+    private FloydEnDisco(File archivo, int n, int tamBloque, int capacidad) throws IOException {
+        if (tamBloque <= 0) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser positivo.");
+        }
+        if (capacidad < 3) {
+            // Un paso de la fase 3 necesita las teselas (i,k), (k,j) e (i,j) a la vez
+            throw new IllegalArgumentException("Se necesitan al menos 3 teselas en memoria.");
+        }
+        this.archivo = archivo;
+        this.n = n;
+        this.tamBloque = tamBloque;
+        this.numBloques = Math.max(1, (n + tamBloque - 1) / tamBloque);
+        this.bytesPorTesela = tamBloque * tamBloque * (Double.BYTES + Integer.BYTES);
+        this.capacidad = capacidad;
+        this.pool = new LinkedHashMap<>(16, 0.75f, true);
+        this.canal = FileChannel.open(archivo.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.lectorAnticipado = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "floyd-disco-lector");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println("Uso: java FloydEnDisco grafo.bin clima salida tamBloque teselasEnMemoria");
+            return;
+        }
+        try (ResultadoFloydDisco resultado = calcularDesdeBinario(new File(args[0]), Integer.parseInt(args[1]),
+                new File(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]))) {
+            System.out.println("Rutas de " + resultado.getNumCiudades() + " ciudades escritas en " + args[2]);
+        }
+    }
+
+    /**
+     * Ejecuta Floyd-Warshall por bloques sobre los pesos de la fuente y deja el resultado
+     * teselado en el archivo indicado.
+     *
+     * @param pesos       peso de cada par de ciudades, consultado una vez por celda
+     * @param n           número de ciudades
+     * @param archivo     archivo de salida (se sobrescribe)
+     * @param tamBloque   lado de cada tesela
+     * @param capacidad   número máximo de teselas en memoria (mínimo 3)
+     */
+    public static ResultadoFloydDisco calcular(FuentePesos pesos, int n, File archivo,
+                                               int tamBloque, int capacidad) throws IOException {
+        return preparar(pesos, n, archivo, tamBloque, capacidad).completar(null);
+    }
+
+    /**
+     * Primera parte de calcular: escribe las teselas iniciales con los pesos de la fuente
+     * y devuelve el cálculo listo para completar(), p. ej. en otro hilo cuando la fuente
+     * es el grafo y este puede cambiar después.
+     */
+    public static FloydEnDisco preparar(FuentePesos pesos, int n, File archivo,
+                                        int tamBloque, int capacidad) throws IOException {
+        FloydEnDisco floyd = new FloydEnDisco(archivo, n, tamBloque, capacidad);
+        try {
+            floyd.inicializar(pesos);
+        } catch (IOException | RuntimeException e) {
+            floyd.close();
+            throw e;
+        }
+        return floyd;
+    }
+
+    /**
+     * Ejecuta Floyd sobre las teselas ya inicializadas y devuelve el resultado. Avisa al
+     * progreso (si no es null) tras cada bloque de pivotes y lanza CancellationException
+     * si este pide detenerse; en cualquier caso cierra el cálculo.
+     */
+    public ResultadoFloydDisco completar(ProgresoFloyd progreso) throws IOException {
+        try {
+            ejecutar(progreso);
+            finalizar();
+        } finally {
+            close();
+        }
+        return new ResultadoFloydDisco(archivo);
+    }
+
+    /**
+     * Como calcular, pero con los pesos del clima indicado leídos de un grafo en formato
+     * ArchivoGrafoBinario sin cargarlo: en memoria solo quedan los nombres, una franja de
+     * tamBloque filas de teselas mientras se inicializa y el pool de teselas. Los índices
+     * de ciudad son los mismos que daría GrafoFloyd.cargarDesdeBinario.
+     */
+    public static ResultadoFloydDisco calcularDesdeBinario(File binario, int tipoClima, File archivo,
+                                                           int tamBloque, int capacidad) throws IOException {
+        if (tipoClima < 0 || tipoClima > 3) {
+            throw new IllegalArgumentException("Clima no válido: " + tipoClima);
+        }
+        ConexionesBinarias conexiones = ConexionesBinarias.leerCabecera(binario);
+        FloydEnDisco floyd = new FloydEnDisco(archivo, conexiones.indicePorId.length, tamBloque, capacidad);
+        try {
+            floyd.inicializar(conexiones, tipoClima);
+        } catch (IOException | RuntimeException e) {
+            floyd.close();
+            throw e;
+        }
+        return floyd.completar(null);
+    }
+
+    //----------------------------------------------------------------------
+    // INICIALIZACIÓN: volcar los pesos al archivo teselado
+    //----------------------------------------------------------------------
+    private void inicializar(FuentePesos pesos) throws IOException {
+        for (int bi = 0; bi < numBloques; bi++) {
+            for (int bj = 0; bj < numBloques; bj++) {
+                Tesela t = teselaSinConexiones(bi, bj);
+                for (int li = 0; li < tamBloque; li++) {
+                    int i = bi * tamBloque + li;
+                    for (int lj = 0; lj < tamBloque; lj++) {
+                        int j = bj * tamBloque + lj;
+                        if (i < n && j < n && i != j) {
+                            fijarPeso(t, li, lj, pesos.peso(i, j));
+                        }
+                    }
+                }
+                escribir(t);
+            }
+        }
+    }
+
+    // Una pasada por las conexiones del archivo por cada franja de filas de teselas
+    private void inicializar(ConexionesBinarias conexiones, int tipoClima) throws IOException {
+        for (int bi = 0; bi < numBloques; bi++) {
+            Tesela[] franja = new Tesela[numBloques];
+            for (int bj = 0; bj < numBloques; bj++) {
+                franja[bj] = teselaSinConexiones(bi, bj);
+            }
+            int primera = bi * tamBloque;
+            conexiones.recorrer(tipoClima, (i, j, peso) -> {
+                if (i >= primera && i < primera + tamBloque && i != j) {
+                    fijarPeso(franja[j / tamBloque], i - primera, j % tamBloque, peso);
+                }
+            });
+            for (Tesela t : franja) {
+                escribir(t);
+            }
+        }
+    }
+
+    // Tesela con 0 en la diagonal e INFINITO en el resto; las celdas de relleno
+    // (i o j >= n) quedan así, como nodos aislados
+    private Tesela teselaSinConexiones(int fila, int columna) {
+        Tesela t = new Tesela(fila, columna, tamBloque);
+        Arrays.fill(t.distancias, INFINITO);
+        Arrays.fill(t.siguiente, -1);
+        if (fila == columna) {
+            for (int l = 0; l < tamBloque; l++) {
+                t.distancias[l * tamBloque + l] = 0;
+            }
+        }
+        return t;
+    }
+
+    private void fijarPeso(Tesela t, int li, int lj, double peso) {
+        int p = li * tamBloque + lj;
+        t.distancias[p] = peso;
+        t.siguiente[p] = peso != INFINITO ? t.columna * tamBloque + lj : -1;
+    }
+
+    /**
+     * Conexiones de un archivo de ArchivoGrafoBinario leídas en secuencia. Solo guarda
+     * el índice de cada id, con las ciudades en el orden alfabético de GrafoFloyd.
+     */
+    private static class ConexionesBinarias {
+
+        interface Visitante {
+            void conexion(int i, int j, double peso) throws IOException;
+        }
+
+        final File archivo;
+        final int[] indicePorId;
+        final long inicioConexiones;
+        final int cantidadConexiones;
+
+        private ConexionesBinarias(File archivo, int[] indicePorId, long inicioConexiones, int cantidadConexiones) {
+            this.archivo = archivo;
+            this.indicePorId = indicePorId;
+            this.inicioConexiones = inicioConexiones;
+            this.cantidadConexiones = cantidadConexiones;
+        }
+
+        static ConexionesBinarias leerCabecera(File archivo) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo), 1 << 16))) {
+                if (in.readInt() != ArchivoGrafoBinario.MAGIA) {
+                    throw new IOException("El archivo no tiene formato de grafo binario: " + archivo);
+                }
+                int version = in.readInt();
+                if (version != ArchivoGrafoBinario.VERSION) {
+                    throw new IOException("Versión de grafo binario no soportada: " + version);
+                }
+                int cantidadCiudades = in.readInt();
+                int cantidadConexiones = in.readInt();
+                long restante = archivo.length() - ArchivoGrafoBinario.TAM_CABECERA;
+                if (cantidadCiudades < 0 || cantidadConexiones < 0
+                        || cantidadCiudades > restante / Short.BYTES
+                        || cantidadConexiones > (long) cantidadCiudades * (cantidadCiudades - 1)) {
+                    throw new IOException("Cabecera de grafo binario no válida: " + cantidadCiudades
+                            + " ciudades, " + cantidadConexiones + " conexiones");
+                }
+
+                String[] nombres = new String[cantidadCiudades];
+                long posicion = ArchivoGrafoBinario.TAM_CABECERA;
+                byte[] bytes = new byte[0xFFFF];
+                for (int c = 0; c < cantidadCiudades; c++) {
+                    int longitud = in.readUnsignedShort();
+                    in.readFully(bytes, 0, longitud);
+                    nombres[c] = new String(bytes, 0, longitud, StandardCharsets.UTF_8);
+                    posicion += Short.BYTES + longitud;
+                }
+                if (archivo.length() - posicion < (long) cantidadConexiones * ArchivoGrafoBinario.TAM_CONEXION) {
+                    throw new EOFException("Grafo binario truncado: " + archivo);
+                }
+
+                // Mismo orden de índices que GrafoFloyd: alfabético
+                Integer[] orden = new Integer[cantidadCiudades];
+                for (int c = 0; c < cantidadCiudades; c++) {
+                    orden[c] = c;
+                }
+                Arrays.sort(orden, Comparator.comparing(c -> nombres[c]));
+                int[] indicePorId = new int[cantidadCiudades];
+                for (int i = 0; i < cantidadCiudades; i++) {
+                    indicePorId[orden[i]] = i;
+                }
+                return new ConexionesBinarias(archivo, indicePorId, posicion, cantidadConexiones);
+            }
+        }
+
+        void recorrer(int tipoClima, Visitante visitante) throws IOException {
+            int n = indicePorId.length;
+            try (FileInputStream entrada = new FileInputStream(archivo)) {
+                entrada.getChannel().position(inicioConexiones);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(entrada, 1 << 16));
+                for (int e = 0; e < cantidadConexiones; e++) {
+                    int id1 = in.readInt();
+                    int id2 = in.readInt();
+                    if (id1 < 0 || id1 >= n || id2 < 0 || id2 >= n) {
+                        throw new IOException("Conexión " + e + " con ids fuera de rango en " + archivo);
+                    }
+                    double peso = 0;
+                    for (int clima = 0; clima < 4; clima++) {
+                        double tiempo = in.readDouble();
+                        if (clima == tipoClima) peso = tiempo;
+                    }
+                    visitante.conexion(indicePorId[id1], indicePorId[id2], peso);
+                }
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // ALGORITMO POR BLOQUES: diagonal, fila/columna del pivote y resto
+    //----------------------------------------------------------------------
+    private void ejecutar(ProgresoFloyd progreso) throws IOException {
+        for (int kb = 0; kb < numBloques; kb++) {
+            List<long[]> orden = new ArrayList<>();
+            for (int j = 0; j < numBloques; j++) {
+                if (j != kb) orden.add(new long[]{kb, j});
+            }
+            for (int i = 0; i < numBloques; i++) {
+                if (i != kb) orden.add(new long[]{i, kb});
+            }
+            for (int i = 0; i < numBloques; i++) {
+                for (int j = 0; j < numBloques; j++) {
+                    if (i != kb && j != kb) orden.add(new long[]{i, j});
+                }
+            }
+
+            // Fase 1: tesela diagonal del pivote
+            Tesela diagonal = obtener(kb, kb);
+            actualizar(diagonal, diagonal, diagonal);
+
+            for (int t = 0; t < orden.size(); t++) {
+                if (t + 1 < orden.size()) {
+                    anticipar((int) orden.get(t + 1)[0], (int) orden.get(t + 1)[1]);
+                }
+                int i = (int) orden.get(t)[0];
+                int j = (int) orden.get(t)[1];
+                // Se vuelve a pedir la diagonal/pivotes para mantenerlos como recientes en el LRU
+                Tesela ik = obtener(i, kb);
+                Tesela kj = obtener(kb, j);
+                Tesela ij = obtener(i, j);
+                actualizar(ij, ik, kj);
+            }
+
+            int pivotes = Math.min((kb + 1) * tamBloque, n);
+            if (progreso != null && !progreso.pivoteCompletado(pivotes, n)) {
+                throw new CancellationException("Floyd en disco detenido tras " + pivotes + " de " + n + " pivotes");
+            }
+        }
+    }
+
+    // Relaja la tesela c usando como intermedios los nodos del bloque pivote:
+    // c[i][j] = min(c[i][j], a[i][k] + b[k][j])
+    private void actualizar(Tesela c, Tesela a, Tesela b) {
+        int tb = tamBloque;
+        for (int k = 0; k < tb; k++) {
+            for (int i = 0; i < tb; i++) {
+                double dik = a.distancias[i * tb + k];
+                if (dik == INFINITO) continue;
+                int sik = a.siguiente[i * tb + k];
+                for (int j = 0; j < tb; j++) {
+                    double dkj = b.distancias[k * tb + j];
+                    if (dkj != INFINITO && dik + dkj < c.distancias[i * tb + j]) {
+                        c.distancias[i * tb + j] = dik + dkj;
+                        c.siguiente[i * tb + j] = sik;
+                    }
+                }
+            }
+        }
+        c.sucia = true;
+    }
+
+    private void finalizar() throws IOException {
+        for (Tesela t : pool.values()) {
+            if (t.sucia) escribir(t);
+        }
+        pool.clear();
+        ByteBuffer cabecera = ByteBuffer.allocate(TAM_CABECERA);
+        cabecera.putInt(MAGIA).putInt(n).putInt(tamBloque).flip();
+        while (cabecera.hasRemaining()) {
+            canal.write(cabecera, TAM_CABECERA - cabecera.remaining());
+        }
+        canal.force(true);
+    }
+
+    //----------------------------------------------------------------------
+    // POOL DE TESELAS Y LECTURA ANTICIPADA
+    //----------------------------------------------------------------------
+    private static long clave(int fila, int columna) {
+        return ((long) fila << 32) | (columna & 0xFFFFFFFFL);
+    }
+
+    private Tesela obtener(int fila, int columna) throws IOException {
+        long clave = clave(fila, columna);
+        Tesela t = pool.get(clave);
+        if (t != null) return t;
+
+        Future<Tesela> pendiente = pendientes.remove(clave);
+        if (pendiente != null) {
+            try {
+                t = pendiente.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lectura anticipada interrumpida");
+            } catch (ExecutionException e) {
+                throw new IOException("Error en lectura anticipada", e.getCause());
+            }
+        } else {
+            t = leer(fila, columna);
+        }
+
+        if (pool.size() >= capacidad) {
+            Iterator<Tesela> it = pool.values().iterator();
+            Tesela victima = it.next();
+            it.remove();
+            if (victima.sucia) escribir(victima);
+        }
+        pool.put(clave, t);
+        return t;
+    }
+
+    // Solo se anticipan teselas que no están en memoria: una tesela fuera del pool
+    // ya fue escrita y nadie la modificará hasta que se vuelva a pedir.
+    private void anticipar(int fila, int columna) {
+        long clave = clave(fila, columna);
+        if (pool.containsKey(clave) || pendientes.containsKey(clave)) return;
+        pendientes.put(clave, lectorAnticipado.submit(() -> leer(fila, columna)));
+    }
+
+    private Tesela leer(int fila, int columna) throws IOException {
+        Tesela t = new Tesela(fila, columna, tamBloque);
+        ByteBuffer buffer = ByteBuffer.allocate(bytesPorTesela);
+        long posicion = posicion(fila, columna);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicion + buffer.position()) < 0) {
+                throw new EOFException("Tesela incompleta en el archivo");
+            }
+        }
+        buffer.flip();
+        buffer.asDoubleBuffer().get(t.distancias);
+        buffer.position(tamBloque * tamBloque * Double.BYTES);
+        buffer.asIntBuffer().get(t.siguiente);
+        return t;
+    }
+
+    private void escribir(Tesela t) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytesPorTesela);
+        buffer.asDoubleBuffer().put(t.distancias);
+        buffer.position(tamBloque * tamBloque * Double.BYTES);
+        buffer.asIntBuffer().put(t.siguiente);
+        buffer.position(0);
+        long posicion = posicion(t.fila, t.columna);
+        while (buffer.hasRemaining()) {
+            canal.write(buffer, posicion + buffer.position());
+        }
+        t.sucia = false;
+    }
+
+    private long posicion(int fila, int columna) {
+        return TAM_CABECERA + ((long) fila * numBloques + columna) * bytesPorTesela;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lectorAnticipado.shutdownNow();
+        canal.close();
+    }
+}
@@ -0,0 +1,34 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Grafos aleatorios con el formato de guategrafo.txt para los benchmarks y
+ * ReproductorCarga. Las ciudades se llaman C0, C1, ...; con la misma cantidad de
+ * ciudades y conexiones siempre se genera el mismo grafo.
+ */
+public class GrafoAleatorio {
+
+    private GrafoAleatorio() {
+    }
+
+    /**
+     * Escribe en un archivo temporal hasta el número indicado de conexiones entre pares
+     * aleatorios (se omiten las de una ciudad consigo misma) y lo devuelve.
+     */
+    public static File crearArchivo(int ciudades, int conexiones) throws IOException {
+        File archivo = File.createTempFile("grafo-aleatorio", ".txt");
+        archivo.deleteOnExit();
+        Random random = new Random(1);
+        try (PrintWriter writer = new PrintWriter(archivo)) {
+            for (int e = 0; e < conexiones; e++) {
+                int a = random.nextInt(ciudades);
+                int b = random.nextInt(ciudades);
+                if (a != b) {
+                    double t = 1 + random.nextInt(50);
+                    writer.println("C" + a + " C" + b + " " + t + " " + (t * 1.5) + " " + (t * 2) + " " + (t * 3));
+                }
+            }
+        }
+        return archivo;
+    }
+}
@@ -1,12 +1,29 @@
 import java.util.*;
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntFunction;
 
+/**
+ * Grafo de ciudades con tiempos de viaje por clima. En modo dirigido (el de
+ * guategrafo.txt) cada línea es una conexión de ida; en modo no dirigido cada línea es
+ * una carretera de doble vía y los pesos se guardan como triángulos superiores
+ * empaquetados (n(n+1)/2 valores por clima en lugar de n²).
+ */
 public class GrafoFloyd {
     
+    private final boolean noDirigido;             // Carreteras de doble vía guardadas una vez
     private Map<String, Integer> ciudadIndice;    
     private List<String> ciudades;                
-    private double[][][] matriz;                  
+    private double[][][] matriz;                  // Modo dirigido: clima -> matriz n x n
+    private double[][] triangulo;                 // Modo no dirigido: clima -> triángulo superior
     private int numCiudades;                      
+    private Map<Long, double[]> lote;             // Mutaciones pendientes; null si no hay lote abierto
+    private volatile long version;                // Aumenta con cada cambio de conexiones
     
 
     private static final int CLIMA_NORMAL = 0;     // Condiciones normales de viaje
@@ -14,9 +31,17 @@ public class GrafoFloyd {
     private static final int CLIMA_NIEVE = 2;      // Condiciones con nieve 
     private static final int CLIMA_TORMENTA = 3;   // Condiciones de tormenta 
     private static final double INFINITO = Double.MAX_VALUE;  // Representa rutas inexistentes
+    private static final int FACTOR_INCREMENTAL = 4;  // Cambios por cada n ciudades que aún compensan
+    static final String PREFIJO_CIUDAD = "# ciudad ";         // Declara una ciudad aunque no tenga conexiones
     
  
     public GrafoFloyd() {
+        this(false);
+    }
+    
+    /** Grafo vacío; con noDirigido, cada conexión vale en ambos sentidos. */
+    public GrafoFloyd(boolean noDirigido) {
+        this.noDirigido = noDirigido;
         ciudadIndice = new HashMap<>();
         ciudades = new ArrayList<>();
         numCiudades = 0;
@@ -24,13 +49,18 @@ public class GrafoFloyd {
     
     
     public void cargarDesdeArchivo(String nombreArchivo) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(nombreArchivo));
+        BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(nombreArchivo), StandardCharsets.UTF_8));
         String linea;
         Set<String> ciudadesUnicas = new HashSet<>();
         List<String[]> datos = new ArrayList<>();
 
      
         while ((linea = br.readLine()) != null) {
+            if (linea.startsWith(PREFIJO_CIUDAD)) {
+                ciudadesUnicas.add(linea.substring(PREFIJO_CIUDAD.length()).trim());
+                continue;
+            }
             String[] partes = linea.trim().split("\\s+");
             if (partes.length >= 6) {  
                 ciudadesUnicas.add(partes[0]);
@@ -40,60 +70,380 @@ public class GrafoFloyd {
         }
         br.close();
 
+        inicializarCiudades(ciudadesUnicas);
+
        
-        ciudades = new ArrayList<>(ciudadesUnicas);
+        for (String[] partes : datos) {
+            String ciudad1 = partes[0];
+            String ciudad2 = partes[1];
+            int indice1 = ciudadIndice.get(ciudad1);
+            int indice2 = ciudadIndice.get(ciudad2);
+
+            // Asignar tiempos para cada condición climática
+            double[] tiempos = new double[4];
+            for (int clima = 0; clima < 4; clima++) {
+                tiempos[clima] = Double.parseDouble(partes[2 + clima]);
+            }
+            cargarConexion(indice1, indice2, tiempos);
+        }
+    }
+    
+   
+    /**
+     * Carga el grafo desde el formato binario de ArchivoGrafoBinario mapeando el archivo
+     * en memoria: sin tokenizar líneas ni convertir texto a números.
+     */
+    public void cargarDesdeBinario(String nombreArchivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(new File(nombreArchivo).toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (buffer.remaining() < ArchivoGrafoBinario.TAM_CABECERA
+                    || buffer.getInt() != ArchivoGrafoBinario.MAGIA) {
+                throw new IOException("El archivo no tiene formato de grafo binario: " + nombreArchivo);
+            }
+            int version = buffer.getInt();
+            if (version != ArchivoGrafoBinario.VERSION) {
+                throw new IOException("Versión de grafo binario no soportada: " + version);
+            }
+            int cantidadCiudades = buffer.getInt();
+            int cantidadConexiones = buffer.getInt();
+            // Cada nombre ocupa al menos su longitud y no hay más de una conexión por par
+            if (cantidadCiudades < 0 || cantidadConexiones < 0
+                    || cantidadCiudades > buffer.remaining() / Short.BYTES
+                    || cantidadConexiones > (long) cantidadCiudades * (cantidadCiudades - 1)) {
+                throw new IOException("Cabecera de grafo binario no válida: " + cantidadCiudades
+                        + " ciudades, " + cantidadConexiones + " conexiones");
+            }
+
+            // Tabla de nombres: longitud (unsigned short) + bytes UTF-8
+            String[] nombres = new String[cantidadCiudades];
+            byte[] bytes = new byte[0xFFFF];
+            for (int c = 0; c < cantidadCiudades; c++) {
+                int longitud = buffer.getShort() & 0xFFFF;
+                buffer.get(bytes, 0, longitud);
+                nombres[c] = new String(bytes, 0, longitud, StandardCharsets.UTF_8);
+            }
+            int inicioConexiones = buffer.position();
+            if (buffer.limit() - inicioConexiones < (long) cantidadConexiones * ArchivoGrafoBinario.TAM_CONEXION) {
+                throw new EOFException("Grafo binario truncado: " + nombreArchivo);
+            }
+            inicializarCiudades(Arrays.asList(nombres));
+
+            // Registros de conexión de ancho fijo, leídos por posición absoluta; los ids
+            // son posiciones de la tabla de nombres
+            int[] indicePorId = new int[cantidadCiudades];
+            for (int c = 0; c < cantidadCiudades; c++) {
+                indicePorId[c] = ciudadIndice.get(nombres[c]);
+            }
+            for (int e = 0; e < cantidadConexiones; e++) {
+                int registro = inicioConexiones + e * ArchivoGrafoBinario.TAM_CONEXION;
+                int id1 = buffer.getInt(registro);
+                int id2 = buffer.getInt(registro + Integer.BYTES);
+                if (id1 < 0 || id1 >= cantidadCiudades || id2 < 0 || id2 >= cantidadCiudades) {
+                    throw new IOException("Conexión " + e + " con ids fuera de rango en " + nombreArchivo);
+                }
+                int indice1 = indicePorId[id1];
+                int indice2 = indicePorId[id2];
+                int inicioTiempos = registro + 2 * Integer.BYTES;
+                double[] tiempos = new double[4];
+                for (int clima = 0; clima < 4; clima++) {
+                    tiempos[clima] = buffer.getDouble(inicioTiempos + clima * Double.BYTES);
+                }
+                cargarConexion(indice1, indice2, tiempos);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new EOFException("Grafo binario truncado o corrupto: " + nombreArchivo);
+        }
+    }
+
+    // Ordena las ciudades, reconstruye el índice por nombre y crea matrices sin conexiones
+    private void inicializarCiudades(Collection<String> nombres) {
+        ciudades = new ArrayList<>(nombres);
         Collections.sort(ciudades);  // Ordenar alfabéticamente para consistencia
         numCiudades = ciudades.size();
         
+        ciudadIndice = new HashMap<>();
+        version++;
         for (int i = 0; i < numCiudades; i++) {
             ciudadIndice.put(ciudades.get(i), i);
         }
 
-        matriz = new double[4][numCiudades][numCiudades];
+        if (noDirigido) {
+            triangulo = new double[4][tamanoTriangulo(numCiudades)];
+        } else {
+            matriz = new double[4][numCiudades][numCiudades];
+        }
         for (int clima = 0; clima < 4; clima++) {
             for (int i = 0; i < numCiudades; i++) {
-                for (int j = 0; j < numCiudades; j++) {
+                for (int j = noDirigido ? i : 0; j < numCiudades; j++) {
                     if (i == j) {
-                        matriz[clima][i][j] = 0;  // Distancia de una ciudad a sí misma es 0
+                        fijarPeso(clima, i, j, 0);  // Distancia de una ciudad a sí misma es 0
                     } else {
-                        matriz[clima][i][j] = INFINITO;  // Inicialmente no hay conexiones
+                        fijarPeso(clima, i, j, INFINITO);  // Inicialmente no hay conexiones
                     }
                 }
             }
         }
+    }
 
-       
-        for (String[] partes : datos) {
-            String ciudad1 = partes[0];
-            String ciudad2 = partes[1];
-            int indice1 = ciudadIndice.get(ciudad1);
-            int indice2 = ciudadIndice.get(ciudad2);
+    // Conexión leída de un archivo. La diagonal siempre vale 0, así que se ignoran las
+    // conexiones de una ciudad consigo misma; en modo no dirigido, si una carretera
+    // aparece en ambos sentidos con tiempos distintos se conserva el menor
+    private void cargarConexion(int i, int j, double[] tiempos) {
+        if (i == j) {
+            return;
+        }
+        for (int clima = 0; clima < 4; clima++) {
+            fijarPeso(clima, i, j, noDirigido ? Math.min(peso(clima, i, j), tiempos[clima]) : tiempos[clima]);
+        }
+    }
 
-            // Asignar tiempos para cada condición climática
-            matriz[CLIMA_NORMAL][indice1][indice2] = Double.parseDouble(partes[2]);
-            matriz[CLIMA_LLUVIA][indice1][indice2] = Double.parseDouble(partes[3]);
-            matriz[CLIMA_NIEVE][indice1][indice2] = Double.parseDouble(partes[4]);
-            matriz[CLIMA_TORMENTA][indice1][indice2] = Double.parseDouble(partes[5]);
+    //----------------------------------------------------------------------
+    // ALMACENAMIENTO DE PESOS (matriz completa o triángulo superior empaquetado)
+    //----------------------------------------------------------------------
+    private double peso(int tipoClima, int i, int j) {
+        if (noDirigido) {
+            return triangulo[tipoClima][indiceTriangulo(numCiudades, i, j)];
         }
+        return matriz[tipoClima][i][j];
+    }
+
+    private void fijarPeso(int tipoClima, int i, int j, double valor) {
+        if (noDirigido) {
+            triangulo[tipoClima][indiceTriangulo(numCiudades, i, j)] = valor;
+        } else {
+            matriz[tipoClima][i][j] = valor;
+        }
+    }
+
+    // Posición de (i, j) o (j, i) en el triángulo superior guardado fila a fila con la diagonal
+    static int indiceTriangulo(int n, int i, int j) {
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        return (int) ((long) i * n - (long) i * (i - 1) / 2 + (j - i));
+    }
+
+    static int tamanoTriangulo(int n) {
+        long tamano = (long) n * (n + 1) / 2;
+        if (tamano > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Demasiadas ciudades para el modo no dirigido: " + n);
+        }
+        return (int) tamano;
+    }
+
+    public boolean esNoDirigido() {
+        return noDirigido;
     }
     
-   
     public ResultadoFloyd aplicarFloyd(int tipoClima) {
         double[][] distancias = new double[numCiudades][numCiudades];
         int[][] siguiente = new int[numCiudades][numCiudades];
+        calcularFloyd(pesos(tipoClima), distancias, siguiente, null);
+        return new ResultadoFloyd(distancias, siguiente);
+    }
+
+    /**
+     * Variante de aplicarFloyd que escribe en un buffer del espacio de trabajo en lugar
+     * de reservar matrices nuevas y lo publica al terminar. El resultado publicado
+     * anteriormente sigue siendo válido mientras se calcula este.
+     */
+    public ResultadoFloyd aplicarFloyd(int tipoClima, EspacioTrabajoFloyd espacio) {
+        return aplicarFloyd(pesos(tipoClima), espacio, null);
+    }
+
+    /**
+     * Floyd sobre una copia de pesos tomada con copiarPesos, para calcular en otro hilo
+     * mientras el grafo sigue cambiando. Tras cada pivote avisa al progreso (si no es
+     * null); si este pide detenerse lanza CancellationException sin publicar nada.
+     */
+    static ResultadoFloyd aplicarFloyd(double[][] pesos, EspacioTrabajoFloyd espacio, ProgresoFloyd progreso) {
+        ResultadoFloyd destino = espacio.reservar(pesos.length);
+        calcularFloyd(pesos, destino, progreso);
+        espacio.publicar(destino);
+        return destino;
+    }
+
+    /**
+     * Floyd sobre pesos copiados en un buffer ya reservado, sin publicarlo: quien lo
+     * reservó decide si el resultado vale (ver RecalculoFloyd).
+     */
+    static void calcularFloyd(double[][] pesos, ResultadoFloyd destino, ProgresoFloyd progreso) {
+        calcularFloyd(pesos, destino.distancias, destino.siguiente, progreso);
+    }
+
+    /** Copia de los pesos del clima indicado, independiente de mutaciones posteriores. */
+    public double[][] copiarPesos(int tipoClima) {
+        if (noDirigido) {
+            return pesos(tipoClima);  // Ya es una matriz nueva
+        }
+        double[][] pesos = pesos(tipoClima);
+        double[][] copia = new double[numCiudades][];
+        for (int i = 0; i < numCiudades; i++) {
+            copia[i] = pesos[i].clone();
+        }
+        return copia;
+    }
+
+    /**
+     * Floyd para el modo no dirigido: para cada intermedio k solo actualiza el triángulo
+     * superior, aprovechando que d[i][j] == d[j][i]. La matriz de intermedios también es
+     * simétrica y permite reconstruir la ruta en ambos sentidos.
+     */
+    public ResultadoFloydSimetrico aplicarFloydSimetrico(int tipoClima) {
+        return calcularFloydSimetrico(numCiudades, copiarTriangulo(tipoClima), null);
+    }
+
+    /** Copia del triángulo de pesos del clima indicado; requiere un grafo no dirigido. */
+    double[] copiarTriangulo(int tipoClima) {
+        if (!noDirigido) {
+            throw new IllegalStateException("aplicarFloydSimetrico requiere un grafo no dirigido");
+        }
+        return numCiudades == 0 ? new double[0] : triangulo[tipoClima].clone();
+    }
+
+    /**
+     * Floyd simétrico sobre un triángulo de pesos ya copiado, que pasa a ser el de
+     * distancias. Avisa al progreso tras cada pivote (si no es null) y lanza
+     * CancellationException si este pide detenerse.
+     */
+    static ResultadoFloydSimetrico calcularFloydSimetrico(int n, double[] distancias, ProgresoFloyd progreso) {
+        int[] intermedio = new int[distancias.length];
+        Arrays.fill(intermedio, -1);  // -1 = conexión directa (o sin ruta)
+
+        double[] columnaK = new double[n];
+        for (int k = 0; k < n; k++) {
+            // d[i][k] para todo i, leído una vez del triángulo
+            for (int v = 0; v < n; v++) {
+                columnaK[v] = distancias[indiceTriangulo(n, v, k)];
+            }
+            for (int i = 0; i < n; i++) {
+                double dik = columnaK[i];
+                if (i == k || dik == INFINITO) continue;
+                int fila = indiceTriangulo(n, i, i);  // Inicio de la fila i empaquetada
+                for (int j = i + 1; j < n; j++) {
+                    double dkj = columnaK[j];
+                    if (j != k && dkj != INFINITO && dik + dkj < distancias[fila + j - i]) {
+                        distancias[fila + j - i] = dik + dkj;
+                        intermedio[fila + j - i] = k;
+                    }
+                }
+            }
+            if (progreso != null && !progreso.pivoteCompletado(k + 1, n)) {
+                throw new CancellationException("Floyd detenido tras " + (k + 1) + " de " + n + " pivotes");
+            }
+        }
+
+        return new ResultadoFloydSimetrico(n, distancias, intermedio);
+    }
+
+    /**
+     * Variante de aplicarFloyd para grafos dispersos o fragmentados. Para cada nodo
+     * intermedio k solo recorre los orígenes que llegan a k y los destinos alcanzables
+     * desde k; el resultado es idéntico al de aplicarFloyd.
+     */
+    public ResultadoFloyd aplicarFloydDisperso(int tipoClima) {
+        double[][] distancias = new double[numCiudades][numCiudades];
+        int[][] siguiente = new int[numCiudades][numCiudades];
+        calcularFloydDisperso(pesos(tipoClima), distancias, siguiente, null);
+        return new ResultadoFloyd(distancias, siguiente);
+    }
 
+    /** Variante de aplicarFloydDisperso sobre un buffer del espacio de trabajo. */
+    public ResultadoFloyd aplicarFloydDisperso(int tipoClima, EspacioTrabajoFloyd espacio) {
+        return aplicarFloydDisperso(pesos(tipoClima), espacio, null);
+    }
+
+    /** Como aplicarFloyd(pesos, espacio, progreso), con la variante dispersa. */
+    static ResultadoFloyd aplicarFloydDisperso(double[][] pesos, EspacioTrabajoFloyd espacio,
+                                               ProgresoFloyd progreso) {
+        ResultadoFloyd destino = espacio.reservar(pesos.length);
+        calcularFloydDisperso(pesos, destino, progreso);
+        espacio.publicar(destino);
+        return destino;
+    }
+
+    /** Como calcularFloyd(pesos, destino, progreso), con la variante dispersa. */
+    static void calcularFloydDisperso(double[][] pesos, ResultadoFloyd destino, ProgresoFloyd progreso) {
+        calcularFloydDisperso(pesos, destino.distancias, destino.siguiente, progreso);
+    }
+
+    // Floyd disperso sobre matrices ya reservadas; sobrescribe todo su contenido
+    private static void calcularFloydDisperso(double[][] pesos, double[][] distancias, int[][] siguiente,
+                                              ProgresoFloyd progreso) {
+        inicializarResultado(pesos, distancias, siguiente);
+        int numCiudades = pesos.length;
+
+        int[] origenes = new int[numCiudades];    // i con distancias[i][k] finita
+        int[] destinos = new int[numCiudades];    // j con distancias[k][j] finita
+        for (int k = 0; k < numCiudades; k++) {
+            // La fila y la columna de k no cambian mientras k es el intermedio
+            int numOrigenes = 0;
+            int numDestinos = 0;
+            double[] filaK = distancias[k];
+            for (int v = 0; v < numCiudades; v++) {
+                if (v != k && distancias[v][k] != INFINITO) origenes[numOrigenes++] = v;
+                if (v != k && filaK[v] != INFINITO) destinos[numDestinos++] = v;
+            }
+
+            for (int a = 0; a < numOrigenes; a++) {
+                int i = origenes[a];
+                double[] filaI = distancias[i];
+                double dik = filaI[k];
+                for (int b = 0; b < numDestinos; b++) {
+                    int j = destinos[b];
+                    if (dik + filaK[j] < filaI[j]) {
+                        filaI[j] = dik + filaK[j];
+                        siguiente[i][j] = siguiente[i][k];  // Actualizar ruta
+                    }
+                }
+            }
+            if (progreso != null && !progreso.pivoteCompletado(k + 1, numCiudades)) {
+                throw new CancellationException("Floyd detenido tras " + (k + 1) + " de " + numCiudades + " pivotes");
+            }
+        }
+    }
+
+    // Pesos del clima como matriz n x n: en modo dirigido sin copiar (solo para calcular
+    // en el hilo que modifica el grafo) y en modo no dirigido, desplegando el triángulo
+    double[][] pesos(int tipoClima) {
+        if (numCiudades == 0) {
+            return new double[0][0];
+        }
+        if (!noDirigido) {
+            return matriz[tipoClima];
+        }
+        double[][] pesos = new double[numCiudades][numCiudades];
+        for (int i = 0; i < numCiudades; i++) {
+            for (int j = i; j < numCiudades; j++) {
+                pesos[i][j] = pesos[j][i] = peso(tipoClima, i, j);
+            }
+        }
+        return pesos;
+    }
+
+    // Copia los pesos y prepara la matriz de rutas con las conexiones directas
+    private static void inicializarResultado(double[][] pesos, double[][] distancias, int[][] siguiente) {
+        int numCiudades = pesos.length;
         for (int i = 0; i < numCiudades; i++) {
             for (int j = 0; j < numCiudades; j++) {
-                distancias[i][j] = matriz[tipoClima][i][j];
-                if (i != j && matriz[tipoClima][i][j] != INFINITO) {
+                distancias[i][j] = pesos[i][j];
+                if (i != j && pesos[i][j] != INFINITO) {
                     siguiente[i][j] = j;  
                 } else {
                     siguiente[i][j] = -1;  
                 }
             }
         }
+    }
+
+    // Floyd-Warshall sobre matrices ya reservadas; sobrescribe todo su contenido
+    private static void calcularFloyd(double[][] pesos, double[][] distancias, int[][] siguiente,
+                                      ProgresoFloyd progreso) {
+        inicializarResultado(pesos, distancias, siguiente);
+        int numCiudades = pesos.length;
 
-        
         for (int k = 0; k < numCiudades; k++) {           // k = nodo intermedio
             for (int i = 0; i < numCiudades; i++) {       // i = nodo origen
                 for (int j = 0; j < numCiudades; j++) {   // j = nodo destino
@@ -106,9 +456,47 @@ public class GrafoFloyd {
                     }
                 }
             }
+            if (progreso != null && !progreso.pivoteCompletado(k + 1, numCiudades)) {
+                throw new CancellationException("Floyd detenido tras " + (k + 1) + " de " + numCiudades + " pivotes");
+            }
         }
+    }
 
-        return new ResultadoFloyd(distancias, siguiente);
+    /**
+     * Variante fuera de memoria de aplicarFloyd: las matrices de resultado se calculan
+     * por teselas en el archivo indicado con a lo sumo bloquesEnMemoria teselas cargadas.
+     * Cada tesela inicial se llena directamente desde la matriz o el triángulo del
+     * grafo, sin desplegar los pesos en una matriz n x n. Para grafos cuyos pesos
+     * tampoco caben en memoria, FloydEnDisco.calcularDesdeBinario.
+     */
+    public ResultadoFloydDisco aplicarFloydEnDisco(int tipoClima, File archivo,
+                                                   int tamBloque, int bloquesEnMemoria) throws IOException {
+        return FloydEnDisco.calcular((i, j) -> peso(tipoClima, i, j), numCiudades, archivo,
+                tamBloque, bloquesEnMemoria);
+    }
+
+    /**
+     * Como aplicarFloydEnDisco, pero solo escribe las teselas iniciales; el cálculo
+     * devuelto ya no depende del grafo y se completa con FloydEnDisco.completar.
+     */
+    FloydEnDisco prepararFloydEnDisco(int tipoClima, File archivo,
+                                      int tamBloque, int bloquesEnMemoria) throws IOException {
+        return FloydEnDisco.preparar((i, j) -> peso(tipoClima, i, j), numCiudades, archivo,
+                tamBloque, bloquesEnMemoria);
+    }
+
+    /**
+     * Variante distribuida de aplicarFloyd: el coordinador reparte los bloques de filas
+     * entre sus procesos TrabajadorFloyd y devuelve el resultado completo.
+     */
+    public ResultadoFloyd aplicarFloydDistribuido(int tipoClima, CoordinadorFloyd coordinador) throws IOException {
+        return aplicarFloydDistribuido(tipoClima, coordinador, null);
+    }
+
+    /** Variante de aplicarFloydDistribuido que avisa al progreso al terminar cada ronda. */
+    public ResultadoFloyd aplicarFloydDistribuido(int tipoClima, CoordinadorFloyd coordinador,
+                                                  ProgresoFloyd progreso) throws IOException {
+        return coordinador.calcular(pesos(tipoClima), numCiudades, progreso);
     }
     
  
@@ -137,29 +525,83 @@ public class GrafoFloyd {
         
         return camino;
     }
+
+    public List<String> obtenerCamino(String origen, String destino, ResultadoFloydDisco resultado) throws IOException {
+        // Verificar que ambas ciudades existen en el grafo
+        if (!ciudadIndice.containsKey(origen) || !ciudadIndice.containsKey(destino)) {
+            return null;
+        }
+
+        int i = ciudadIndice.get(origen);
+        int j = ciudadIndice.get(destino);
+
+        // Verificar que existe una ruta
+        if (resultado.siguiente(i, j) == -1) {
+            return null; // No hay camino
+        }
+
+        // Reconstruir el camino leyendo la matriz de rutas desde disco
+        List<String> camino = new ArrayList<>();
+        camino.add(origen);
+
+        while (i != j) {
+            i = resultado.siguiente(i, j);
+            camino.add(ciudades.get(i));
+        }
+
+        return camino;
+    }
     
    
+    /** Reconstruye la ruta con cualquier motor de rutas ya calculado. */
+    public List<String> obtenerCamino(String origen, String destino, MotorRutas motor) {
+        if (!ciudadIndice.containsKey(origen) || !ciudadIndice.containsKey(destino)) {
+            return null;
+        }
+        List<Integer> indices = motor.camino(ciudadIndice.get(origen), ciudadIndice.get(destino));
+        if (indices == null) {
+            return null; // No hay camino
+        }
+        List<String> camino = new ArrayList<>();
+        for (int indice : indices) {
+            camino.add(ciudades.get(indice));
+        }
+        return camino;
+    }
+    
+    /**
+     * Centro del grafo con las rutas de un motor. Recorre una fila de distancias a la
+     * vez, así que no necesita la matriz completa en memoria (p. ej. MotorFloydEnDisco).
+     */
+    public String calcularCentro(MotorRutas motor) {
+        double[] fila = new double[numCiudades];
+        return calcularCentro(i -> {
+            motor.distancias(i, fila);
+            return fila;
+        });
+    }
+    
     public String calcularCentro(double[][] distancias) {
-        double[] excentricidades = new double[numCiudades];
+        return calcularCentro(i -> distancias[i]);
+    }
+    
+    // Solo guarda la menor excentricidad vista, sin un arreglo de excentricidades
+    private String calcularCentro(IntFunction<double[]> filas) {
+        double minExcentricidad = INFINITO;
+        int indiceCentro = 0;
         
-        // Calcular la excentricidad de cada ciudad
         for (int i = 0; i < numCiudades; i++) {
+            // Excentricidad: la mayor distancia a una ciudad alcanzable
+            double[] fila = filas.apply(i);
             double maxDistancia = 0;
             for (int j = 0; j < numCiudades; j++) {
-                if (i != j && distancias[i][j] != INFINITO) {
-                    maxDistancia = Math.max(maxDistancia, distancias[i][j]);
+                if (i != j && fila[j] != INFINITO) {
+                    maxDistancia = Math.max(maxDistancia, fila[j]);
                 }
             }
-            excentricidades[i] = maxDistancia;
-        }
-
-        // Encontrar el vértice con mínima excentricidad (centro del grafo)
-        double minExcentricidad = excentricidades[0];
-        int indiceCentro = 0;
-        
-        for (int i = 1; i < numCiudades; i++) {
-            if (excentricidades[i] < minExcentricidad) {
-                minExcentricidad = excentricidades[i];
+            // Vértice con mínima excentricidad (centro del grafo); ante empates, el primero
+            if (i == 0 || maxDistancia < minExcentricidad) {
+                minExcentricidad = maxDistancia;
                 indiceCentro = i;
             }
         }
@@ -168,39 +610,213 @@ public class GrafoFloyd {
     }
     
    
-    public void agregarConexion(String ciudad1, String ciudad2, 
-                               double tiempoNormal, double tiempoLluvia, 
-                               double tiempoNieve, double tiempoTormenta) {
-        // Verificar que ambas ciudades existen en el grafo
+    /**
+     * Comprueba que se puede conectar ciudad1 con ciudad2: ambas existen y son distintas,
+     * porque la distancia de una ciudad a sí misma siempre es 0. Informa del problema.
+     */
+    public boolean validarConexion(String ciudad1, String ciudad2) {
         if (!ciudadIndice.containsKey(ciudad1) || !ciudadIndice.containsKey(ciudad2)) {
             System.out.println("Una o ambas ciudades no existen en el grafo.");
-            return;
+            return false;
+        }
+        if (ciudad1.equals(ciudad2)) {
+            System.out.println("Una ciudad no se puede conectar consigo misma.");
+            return false;
+        }
+        return true;
+    }
+    
+    /** Agrega (o reemplaza) la conexión; en modo no dirigido, en ambos sentidos. */
+    public boolean agregarConexion(String ciudad1, String ciudad2, 
+                               double tiempoNormal, double tiempoLluvia, 
+                               double tiempoNieve, double tiempoTormenta) {
+        // Verificar que ambas ciudades existen en el grafo y son distintas
+        if (!validarConexion(ciudad1, ciudad2)) {
+            return false;
         }
 
         int indice1 = ciudadIndice.get(ciudad1);
         int indice2 = ciudadIndice.get(ciudad2);
 
+        if (lote != null) {
+            // Dentro de un lote solo cuenta la última mutación de cada conexión
+            lote.put(claveConexion(indice1, indice2),
+                    new double[]{tiempoNormal, tiempoLluvia, tiempoNieve, tiempoTormenta});
+            return true;
+        }
+
         // Agregar conexión para todas las condiciones climáticas
-        matriz[CLIMA_NORMAL][indice1][indice2] = tiempoNormal;
-        matriz[CLIMA_LLUVIA][indice1][indice2] = tiempoLluvia;
-        matriz[CLIMA_NIEVE][indice1][indice2] = tiempoNieve;
-        matriz[CLIMA_TORMENTA][indice1][indice2] = tiempoTormenta;
+        fijarPeso(CLIMA_NORMAL, indice1, indice2, tiempoNormal);
+        fijarPeso(CLIMA_LLUVIA, indice1, indice2, tiempoLluvia);
+        fijarPeso(CLIMA_NIEVE, indice1, indice2, tiempoNieve);
+        fijarPeso(CLIMA_TORMENTA, indice1, indice2, tiempoTormenta);
+        version++;
+        return true;
     }
     
-  
-    public void eliminarConexion(String ciudad1, String ciudad2) {
-        // Verificar que ambas ciudades existen en el grafo
-        if (!ciudadIndice.containsKey(ciudad1) || !ciudadIndice.containsKey(ciudad2)) {
-            System.out.println("Una o ambas ciudades no existen en el grafo.");
-            return;
+    /** Cierra la conexión; en modo no dirigido, en ambos sentidos. */
+    public boolean eliminarConexion(String ciudad1, String ciudad2) {
+        // Verificar que ambas ciudades existen en el grafo y son distintas
+        if (!validarConexion(ciudad1, ciudad2)) {
+            return false;
         }
 
         int indice1 = ciudadIndice.get(ciudad1);
         int indice2 = ciudadIndice.get(ciudad2);
 
+        if (lote != null) {
+            lote.put(claveConexion(indice1, indice2), new double[]{INFINITO, INFINITO, INFINITO, INFINITO});
+            return true;
+        }
+
         // Eliminar conexión para todas las condiciones climáticas
         for (int clima = 0; clima < 4; clima++) {
-            matriz[clima][indice1][indice2] = INFINITO;
+            fijarPeso(clima, indice1, indice2, INFINITO);
+        }
+        version++;
+        return true;
+    }
+    
+    //----------------------------------------------------------------------
+    // LOTES DE MUTACIONES
+    //----------------------------------------------------------------------
+
+    /**
+     * Abre un lote: hasta confirmarLote, agregarConexion y eliminarConexion solo se
+     * acumulan y el grafo (y cualquier cálculo sobre él) sigue viendo el estado anterior.
+     */
+    public void iniciarLote() {
+        if (lote != null) {
+            throw new IllegalStateException("Ya hay un lote de mutaciones abierto.");
+        }
+        lote = new LinkedHashMap<>();
+    }
+
+    public boolean enLote() {
+        return lote != null;
+    }
+
+    /**
+     * Aplica de una vez las mutaciones del lote y devuelve los cambios efectivos, con
+     * las mutaciones repetidas sobre una misma conexión ya combinadas. En modo no
+     * dirigido cada carretera cambiada aparece en ambos sentidos.
+     */
+    public CambiosLote confirmarLote() {
+        if (lote == null) {
+            throw new IllegalStateException("No hay un lote de mutaciones abierto.");
+        }
+        List<CambiosLote.Cambio> cambios = new ArrayList<>();
+        for (Map.Entry<Long, double[]> entrada : lote.entrySet()) {
+            int i = (int) (entrada.getKey() >>> 32);
+            int j = (int) (long) entrada.getKey();
+            double[] nuevo = entrada.getValue();
+            double[] anterior = new double[4];
+            boolean cambia = false;
+            for (int clima = 0; clima < 4; clima++) {
+                anterior[clima] = peso(clima, i, j);
+                cambia |= anterior[clima] != nuevo[clima];
+                fijarPeso(clima, i, j, nuevo[clima]);
+            }
+            if (cambia) {
+                cambios.add(new CambiosLote.Cambio(i, j, anterior, nuevo));
+                if (noDirigido) {
+                    cambios.add(new CambiosLote.Cambio(j, i, anterior, nuevo));
+                }
+            }
+        }
+        lote = null;
+        if (!cambios.isEmpty()) {
+            version++;
+        }
+        return new CambiosLote(cambios);
+    }
+
+    /** Cierra el lote abierto sin aplicar ninguna de sus mutaciones. */
+    public void descartarLote() {
+        if (lote == null) {
+            throw new IllegalStateException("No hay un lote de mutaciones abierto.");
+        }
+        lote = null;
+    }
+
+    // En modo no dirigido (i, j) y (j, i) son la misma carretera
+    private long claveConexion(int i, int j) {
+        if (noDirigido && i > j) {
+            return claveConexion(j, i);
+        }
+        return ((long) i << 32) | (j & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Actualiza un resultado de Floyd del clima indicado tras confirmar un lote.
+     * Si en ese clima solo hay conexiones nuevas o más rápidas y son pocas frente al
+     * número de ciudades, propaga cada una en O(n²) sobre una copia en el espacio de
+     * trabajo; si el lote no afecta al clima devuelve el mismo resultado.
+     *
+     * @return el resultado actualizado, o null si conviene recalcular desde cero
+     */
+    public ResultadoFloyd actualizarFloyd(int tipoClima, ResultadoFloyd anterior,
+                                          CambiosLote cambios, EspacioTrabajoFloyd espacio) {
+        List<CambiosLote.Cambio> delClima = cambios.cambiosDeClima(tipoClima);
+        if (delClima.isEmpty()) {
+            return anterior;
+        }
+        if (!cambios.soloReducciones(tipoClima) || delClima.size() * FACTOR_INCREMENTAL > numCiudades) {
+            return null;
+        }
+
+        ResultadoFloyd destino = espacio.reservar(numCiudades);
+        if (destino != anterior) {
+            for (int i = 0; i < numCiudades; i++) {
+                System.arraycopy(anterior.distancias[i], 0, destino.distancias[i], 0, numCiudades);
+                System.arraycopy(anterior.siguiente[i], 0, destino.siguiente[i], 0, numCiudades);
+            }
+        }
+        double[][] distancias = destino.distancias;
+        int[][] siguiente = destino.siguiente;
+
+        for (CambiosLote.Cambio cambio : delClima) {
+            int u = cambio.origen;
+            int v = cambio.destino;
+            double peso = cambio.nuevo[tipoClima];
+            double[] filaV = distancias[v];
+            // Toda ruta nueva i -> j es i -> u, la conexión u -> v y luego v -> j
+            for (int i = 0; i < numCiudades; i++) {
+                double diu = distancias[i][u];
+                if (diu == INFINITO) continue;
+                int primerSalto = (i == u) ? v : siguiente[i][u];
+                for (int j = 0; j < numCiudades; j++) {
+                    if (filaV[j] != INFINITO && diu + peso + filaV[j] < distancias[i][j]) {
+                        distancias[i][j] = diu + peso + filaV[j];
+                        siguiente[i][j] = primerSalto;
+                    }
+                }
+            }
+        }
+        espacio.publicar(destino);
+        return destino;
+    }
+    
+    /**
+     * Escribe las conexiones actuales en el mismo formato que guategrafo.txt,
+     * con los tiempos en representación exacta para poder volver a cargarlos.
+     * Antes declara cada ciudad con una línea "# ciudad X", para que las ciudades
+     * sin conexiones también se conserven. En modo no dirigido escribe cada
+     * carretera una sola vez.
+     */
+    public void escribirConexiones(PrintWriter writer) {
+        for (String ciudad : ciudades) {
+            writer.println(PREFIJO_CIUDAD + ciudad);
+        }
+        for (int i = 0; i < numCiudades; i++) {
+            for (int j = noDirigido ? i + 1 : 0; j < numCiudades; j++) {
+                if (i == j || peso(CLIMA_NORMAL, i, j) == INFINITO) {
+                    continue;
+                }
+                writer.println(ciudades.get(i) + " " + ciudades.get(j) + " "
+                        + peso(CLIMA_NORMAL, i, j) + " " + peso(CLIMA_LLUVIA, i, j) + " "
+                        + peso(CLIMA_NIEVE, i, j) + " " + peso(CLIMA_TORMENTA, i, j));
+            }
         }
     }
     
@@ -220,10 +836,10 @@ public class GrafoFloyd {
         for (int i = 0; i < numCiudades; i++) {
             System.out.print(String.format("%15s", ciudades.get(i)));
             for (int j = 0; j < numCiudades; j++) {
-                if (matriz[tipoClima][i][j] == INFINITO) {
+                if (peso(tipoClima, i, j) == INFINITO) {
                     System.out.print(String.format("%15s", "∞"));
                 } else {
-                    System.out.print(String.format("%15.1f", matriz[tipoClima][i][j]));
+                    System.out.print(String.format("%15.1f", peso(tipoClima, i, j)));
                 }
             }
             System.out.println();
@@ -238,4 +854,36 @@ public class GrafoFloyd {
     public int getNumCiudades() {
         return numCiudades;
     }
+
+    /**
+     * Versión de las conexiones del grafo: cambia con cada carga, mutación aplicada o
+     * lote confirmado con cambios. Sirve para detectar resultados derivados obsoletos.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Índice de la ciudad en las matrices, o -1 si no existe. */
+    public int getIndice(String ciudad) {
+        Integer indice = ciudadIndice.get(ciudad);
+        return indice == null ? -1 : indice;
+    }
+
+    /** Tiempo directo de i a j con el clima indicado (INFINITO si no hay conexión). */
+    public double getPeso(int tipoClima, int i, int j) {
+        return peso(tipoClima, i, j);
+    }
+
+    /** Número de conexiones dirigidas existentes con el clima indicado. */
+    public int contarConexiones(int tipoClima) {
+        int total = 0;
+        for (int i = 0; i < numCiudades; i++) {
+            for (int j = 0; j < numCiudades; j++) {
+                if (i != j && peso(tipoClima, i, j) != INFINITO) {
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
 }
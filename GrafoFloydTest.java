@@ -2,7 +2,10 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -37,6 +40,28 @@ public class GrafoFloydTest {
         }
     }
     
+    /**
+     * Crea un grafo aleatorio dirigido con el número de ciudades y conexiones indicado.
+     * Cada conexión dirigida aparece una sola vez; las ciudades sin conexiones no existen
+     * en el archivo, así que con pocas conexiones quedan grafos fragmentados.
+     */
+    private File crearGrafoAleatorio(String nombre, int ciudades, int conexiones, long semilla) throws IOException {
+        File archivo = tempDir.resolve(nombre).toFile();
+        Random random = new Random(semilla);
+        Set<String> pares = new HashSet<>();
+        try (PrintWriter writer = new PrintWriter(archivo)) {
+            for (int e = 0; e < conexiones; e++) {
+                int a = random.nextInt(ciudades);
+                int b = random.nextInt(ciudades);
+                if (a != b && pares.add(a + "-" + b)) {
+                    double t = 1 + random.nextInt(50);
+                    writer.println("C" + a + " C" + b + " " + t + " " + (t + 1) + " " + (t + 2) + " " + (t + 3));
+                }
+            }
+        }
+        return archivo;
+    }
+    
     // =====================================
     // PRUEBAS PARA RESULTADOFLOYD
     // =====================================
@@ -129,6 +154,77 @@ public class GrafoFloydTest {
         assertEquals(0, grafo.getNumCiudades());
     }
     
+    @Test
+    @DisplayName("Carga binaria - Conversión de ida y vuelta conserva el grafo")
+    void testFormatoBinarioIdaYVuelta() throws IOException {
+        File binario = tempDir.resolve("grafo.grfb").toFile();
+        File texto = tempDir.resolve("regreso.txt").toFile();
+        ArchivoGrafoBinario.convertirABinario(archivoTemporal.getAbsolutePath(), binario.getAbsolutePath());
+        ArchivoGrafoBinario.convertirATexto(binario.getAbsolutePath(), texto.getAbsolutePath());
+        
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        GrafoFloyd desdeBinario = new GrafoFloyd();
+        desdeBinario.cargarDesdeBinario(binario.getAbsolutePath());
+        GrafoFloyd desdeTexto = new GrafoFloyd();
+        desdeTexto.cargarDesdeArchivo(texto.getAbsolutePath());
+        
+        assertEquals(grafo.getCiudades(), desdeBinario.getCiudades());
+        assertEquals(grafo.getCiudades(), desdeTexto.getCiudades());
+        for (int clima = 0; clima < 4; clima++) {
+            for (int i = 0; i < grafo.getNumCiudades(); i++) {
+                for (int j = 0; j < grafo.getNumCiudades(); j++) {
+                    assertEquals(grafo.getPeso(clima, i, j), desdeBinario.getPeso(clima, i, j));
+                    assertEquals(grafo.getPeso(clima, i, j), desdeTexto.getPeso(clima, i, j));
+                }
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Carga binaria - Archivo que no es binario o está truncado")
+    void testFormatoBinarioInvalido() throws IOException {
+        assertThrows(IOException.class, () -> grafo.cargarDesdeBinario(archivoTemporal.getAbsolutePath()));
+        
+        File binario = tempDir.resolve("grafo.grfb").toFile();
+        ArchivoGrafoBinario.convertirABinario(archivoTemporal.getAbsolutePath(), binario.getAbsolutePath());
+        try (RandomAccessFile raf = new RandomAccessFile(binario, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertThrows(EOFException.class, () -> grafo.cargarDesdeBinario(binario.getAbsolutePath()));
+        
+        // Cantidades imposibles en la cabecera
+        ArchivoGrafoBinario.convertirABinario(archivoTemporal.getAbsolutePath(), binario.getAbsolutePath());
+        try (RandomAccessFile raf = new RandomAccessFile(binario, "rw")) {
+            raf.seek(8);
+            raf.writeInt(-1);
+        }
+        assertThrows(IOException.class, () -> grafo.cargarDesdeBinario(binario.getAbsolutePath()));
+        ArchivoGrafoBinario.convertirABinario(archivoTemporal.getAbsolutePath(), binario.getAbsolutePath());
+        try (RandomAccessFile raf = new RandomAccessFile(binario, "rw")) {
+            raf.seek(12);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+        assertThrows(IOException.class, () -> grafo.cargarDesdeBinario(binario.getAbsolutePath()));
+    }
+    
+    @Test
+    @DisplayName("Carga binaria - Nombres de más de 32767 bytes")
+    void testFormatoBinarioNombreLargo() throws IOException {
+        char[] letras = new char[40000];
+        Arrays.fill(letras, 'x');
+        String largo = new String(letras);
+        File texto = tempDir.resolve("nombre_largo.txt").toFile();
+        try (PrintWriter writer = new PrintWriter(texto)) {
+            writer.println("CiudadA " + largo + " 1.0 2.0 3.0 4.0");
+        }
+        File binario = tempDir.resolve("nombre_largo.grfb").toFile();
+        ArchivoGrafoBinario.convertirABinario(texto.getAbsolutePath(), binario.getAbsolutePath());
+        
+        grafo.cargarDesdeBinario(binario.getAbsolutePath());
+        assertEquals(Arrays.asList("CiudadA", largo), grafo.getCiudades());
+        assertEquals(1.0, grafo.getPeso(0, 0, 1));
+    }
+    
     // =====================================
     // PRUEBAS PARA ALGORITMO FLOYD-WARSHALL
     // =====================================
@@ -180,6 +276,51 @@ public class GrafoFloydTest {
         assertNotNull(tormenta);
     }
     
+    @Test
+    @DisplayName("Algoritmo Floyd - Espacio de trabajo reutiliza buffers con doble buffer")
+    void testFloydEspacioTrabajo() throws IOException {
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        EspacioTrabajoFloyd espacio = new EspacioTrabajoFloyd();
+        
+        ResultadoFloyd primero = grafo.aplicarFloyd(0, espacio);
+        ResultadoFloyd segundo = grafo.aplicarFloyd(1, espacio);
+        ResultadoFloyd tercero = grafo.aplicarFloyd(0, espacio);
+        
+        // El resultado publicado nunca es el buffer en cálculo
+        assertNotSame(primero, segundo);
+        assertSame(tercero, espacio.getPublicado());
+        // En régimen estable se alternan los mismos dos buffers
+        assertSame(primero, tercero);
+        assertArrayEquals(grafo.aplicarFloyd(1).distancias, segundo.distancias);
+        assertArrayEquals(grafo.aplicarFloyd(0).distancias, tercero.distancias);
+        assertArrayEquals(grafo.aplicarFloyd(0).siguiente, tercero.siguiente);
+    }
+    
+    @Test
+    @DisplayName("Algoritmo Floyd - Variante dispersa idéntica a la densa")
+    void testFloydDispersoIdentico() throws IOException {
+        // Pocas conexiones por ciudad para que queden componentes aislados
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("disperso.txt", 40, 40, 3).getAbsolutePath());
+        
+        for (int clima = 0; clima < 4; clima++) {
+            ResultadoFloyd denso = grafo.aplicarFloyd(clima);
+            ResultadoFloyd disperso = grafo.aplicarFloydDisperso(clima);
+            assertArrayEquals(denso.distancias, disperso.distancias);
+            assertArrayEquals(denso.siguiente, disperso.siguiente);
+        }
+        
+        // Sobre el espacio de trabajo alterna los mismos dos buffers que la variante densa
+        EspacioTrabajoFloyd espacio = new EspacioTrabajoFloyd();
+        ResultadoFloyd primero = grafo.aplicarFloydDisperso(0, espacio);
+        ResultadoFloyd segundo = grafo.aplicarFloydDisperso(1, espacio);
+        ResultadoFloyd tercero = grafo.aplicarFloydDisperso(2, espacio);
+        assertNotSame(primero, segundo);
+        assertSame(primero, tercero);
+        assertSame(tercero, espacio.getPublicado());
+        assertArrayEquals(grafo.aplicarFloyd(2).distancias, tercero.distancias);
+        assertArrayEquals(grafo.aplicarFloyd(2).siguiente, tercero.siguiente);
+    }
+    
     // =====================================
     // PRUEBAS PARA OBTENCIÓN DE CAMINOS
     // =====================================
@@ -337,6 +478,75 @@ public class GrafoFloydTest {
         assertTrue(output.contains("no existen"));
     }
     
+    @Test
+    @DisplayName("Lote de mutaciones - Combina cambios sobre la misma conexión")
+    void testLoteCombinaMutaciones() throws IOException {
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        ResultadoFloyd antes = grafo.aplicarFloyd(0);
+        
+        grafo.iniciarLote();
+        assertTrue(grafo.enLote());
+        grafo.eliminarConexion("CiudadA", "CiudadB");
+        grafo.agregarConexion("CiudadA", "CiudadB", 10.0, 15.0, 20.0, 25.0);  // Se anula
+        grafo.eliminarConexion("CiudadC", "CiudadD");
+        grafo.agregarConexion("CiudadC", "CiudadD", 4.0, 7.0, 9.0, 11.0);     // Solo cambia normal
+        assertFalse(grafo.agregarConexion("CiudadX", "CiudadD", 1.0, 1.0, 1.0, 1.0));
+        
+        // Mientras el lote está abierto el grafo no cambia
+        assertArrayEquals(antes.distancias, grafo.aplicarFloyd(0).distancias);
+        
+        CambiosLote cambios = grafo.confirmarLote();
+        assertFalse(grafo.enLote());
+        assertEquals(1, cambios.getNumCambios());
+        assertTrue(cambios.afectaClima(0));
+        assertFalse(cambios.afectaClima(1));
+        assertTrue(cambios.soloReducciones(0));
+        assertEquals(4.0, grafo.getPeso(0, 2, 3), 0.001);
+        assertThrows(IllegalStateException.class, () -> grafo.confirmarLote());
+    }
+    
+    @Test
+    @DisplayName("Lote de mutaciones - Actualización incremental igual a recálculo completo")
+    void testLoteActualizacionIncremental() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("lote.txt", 40, 60, 5).getAbsolutePath());
+        List<String> ciudades = grafo.getCiudades();
+        Random random = new Random(9);
+        MotorFloyd motor = new MotorFloyd();
+        motor.calcular(grafo, 2);
+        
+        // Primero solo conexiones nuevas (incremental) y luego cierres (recálculo)
+        for (int ronda = 0; ronda < 2; ronda++) {
+            grafo.iniciarLote();
+            for (int m = 0; m < 5; m++) {
+                String a = ciudades.get(random.nextInt(ciudades.size()));
+                String b = ciudades.get(random.nextInt(ciudades.size()));
+                if (a.equals(b)) continue;
+                if (ronda == 0) {
+                    grafo.agregarConexion(a, b, 1.0, 1.5, 0.5 + random.nextInt(3), 3.0);
+                } else {
+                    grafo.eliminarConexion(a, b);
+                }
+            }
+            CambiosLote cambios = grafo.confirmarLote();
+            assertEquals(ronda == 0, cambios.soloReducciones(2));
+            motor.actualizar(grafo, 2, cambios);
+            
+            ResultadoFloyd completo = grafo.aplicarFloyd(2);
+            for (int i = 0; i < ciudades.size(); i++) {
+                for (int j = 0; j < ciudades.size(); j++) {
+                    assertEquals(completo.distancias[i][j], motor.distancia(i, j), 1e-9);
+                    List<Integer> camino = motor.camino(i, j);
+                    if (camino == null) continue;
+                    double total = 0;
+                    for (int p = 0; p + 1 < camino.size(); p++) {
+                        total += grafo.getPeso(2, camino.get(p), camino.get(p + 1));
+                    }
+                    assertEquals(completo.distancias[i][j], total, 1e-9);
+                }
+            }
+        }
+    }
+    
     // =====================================
     // PRUEBAS PARA MÉTODOS GETTER
     // =====================================
@@ -451,6 +661,1073 @@ public class GrafoFloydTest {
         assertNotNull(centroModificado);
     }
     
+    // =====================================
+    // PRUEBAS PARA EL MODO NO DIRIGIDO
+    // =====================================
+    
+    @Test
+    @DisplayName("Modo no dirigido - Igual a duplicar cada línea en sentido inverso")
+    void testFloydSimetricoIgualADirigidoDuplicado() throws IOException {
+        File aleatorio = crearGrafoAleatorio("aleatorio.txt", 18, 45, 11);
+        File simple = tempDir.resolve("simple.txt").toFile();
+        File duplicado = tempDir.resolve("duplicado.txt").toFile();
+        Set<String> pares = new HashSet<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(aleatorio));
+             PrintWriter ws = new PrintWriter(simple); PrintWriter wd = new PrintWriter(duplicado)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] partes = linea.split(" ", 3);
+                // Sin la conexión inversa repetida: así ambos grafos tienen los mismos pesos
+                String par = partes[0].compareTo(partes[1]) < 0 ? partes[0] + "-" + partes[1] : partes[1] + "-" + partes[0];
+                if (pares.add(par)) {
+                    ws.println(linea);
+                    wd.println(linea);
+                    wd.println(partes[1] + " " + partes[0] + " " + partes[2]);
+                }
+            }
+        }
+        GrafoFloyd simetrico = new GrafoFloyd(true);
+        simetrico.cargarDesdeArchivo(simple.getAbsolutePath());
+        grafo.cargarDesdeArchivo(duplicado.getAbsolutePath());
+        assertEquals(grafo.getCiudades(), simetrico.getCiudades());
+        assertEquals(grafo.contarConexiones(3), simetrico.contarConexiones(3));
+        assertThrows(IllegalStateException.class, () -> grafo.aplicarFloydSimetrico(3));
+        
+        MotorRutas motor = SelectorMotor.seleccionar(simetrico, 3);
+        assertTrue(motor instanceof MotorFloydSimetrico);
+        motor.calcular(simetrico, 3);
+        MotorFloyd completo = new MotorFloyd();
+        completo.calcular(simetrico, 3);   // Los motores n x n también aceptan el modo no dirigido
+        ResultadoFloyd dirigido = grafo.aplicarFloyd(3);
+        List<String> ciudades = grafo.getCiudades();
+        for (int i = 0; i < ciudades.size(); i++) {
+            for (int j = 0; j < ciudades.size(); j++) {
+                assertEquals(dirigido.distancias[i][j], motor.distancia(i, j), 1e-9);
+                assertEquals(dirigido.distancias[i][j], completo.distancia(i, j), 1e-9);
+                if (i == j) continue;
+                
+                // La ruta reconstruida debe sumar la distancia mínima en ambos sentidos
+                List<String> camino = simetrico.obtenerCamino(ciudades.get(i), ciudades.get(j), motor);
+                if (dirigido.distancias[i][j] == Double.MAX_VALUE) {
+                    assertNull(camino);
+                    continue;
+                }
+                assertEquals(ciudades.get(i), camino.get(0));
+                assertEquals(ciudades.get(j), camino.get(camino.size() - 1));
+                double total = 0;
+                for (int p = 0; p + 1 < camino.size(); p++) {
+                    int a = ciudades.indexOf(camino.get(p));
+                    int b = ciudades.indexOf(camino.get(p + 1));
+                    total += dirigido.distancias[a][b];
+                }
+                assertEquals(dirigido.distancias[i][j], total, 1e-9);
+            }
+        }
+        assertEquals(grafo.calcularCentro(dirigido.distancias), simetrico.calcularCentro(motor));
+    }
+    
+    @Test
+    @DisplayName("Modo no dirigido - Cerrar una carretera la cierra en ambos sentidos")
+    void testFloydSimetricoEliminarConexion() throws IOException {
+        GrafoFloyd simetrico = new GrafoFloyd(true);
+        simetrico.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        assertTrue(simetrico.esNoDirigido());
+        assertEquals(10.0, simetrico.getPeso(0, 1, 0), 0.001);
+        
+        ResultadoFloydSimetrico antes = simetrico.aplicarFloydSimetrico(0);
+        assertEquals(Arrays.asList(3, 2, 1, 0), antes.camino(3, 0));
+        
+        assertTrue(simetrico.eliminarConexion("CiudadC", "CiudadB"));
+        assertEquals(Double.MAX_VALUE, simetrico.getPeso(0, 1, 2));
+        ResultadoFloydSimetrico despues = simetrico.aplicarFloydSimetrico(0);
+        assertEquals(Arrays.asList(0, 2, 3), despues.camino(0, 3));
+        assertEquals(30.0, despues.distancia(3, 0), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Conexiones - Una ciudad no se puede conectar consigo misma")
+    void testConexionConsigoMisma() throws IOException {
+        for (GrafoFloyd g : Arrays.asList(new GrafoFloyd(), new GrafoFloyd(true))) {
+            g.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+            assertFalse(g.agregarConexion("CiudadA", "CiudadA", 5.0, 6.0, 7.0, 8.0));
+            assertFalse(g.eliminarConexion("CiudadA", "CiudadA"));
+            for (int clima = 0; clima < 4; clima++) {
+                assertEquals(0.0, g.getPeso(clima, 0, 0));
+            }
+        }
+        
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(grafo, base, log, 100)) {
+            bitacora.recuperar(archivoTemporal.getAbsolutePath());
+            assertFalse(bitacora.agregarConexion("CiudadB", "CiudadB", 5.0, 6.0, 7.0, 8.0));
+        }
+        assertEquals(0, log.length());
+        
+        // Un registro así escrito antes de rechazarlos se ignora al recuperar
+        try (FileWriter writer = new FileWriter(log, true)) {
+            writer.write("1 A CiudadB CiudadB 5.0 6.0 7.0 8.0\n");
+        }
+        GrafoFloyd reiniciado = new GrafoFloyd();
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(reiniciado, base, log, 100)) {
+            bitacora.recuperar(archivoTemporal.getAbsolutePath());
+            assertEquals(0.0, reiniciado.getPeso(0, 1, 1));
+        }
+    }
+    
+    @Test
+    @DisplayName("Modo no dirigido - Lotes y bitácora en ambos sentidos")
+    void testNoDirigidoLoteYBitacora() throws IOException {
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        GrafoFloyd simetrico = new GrafoFloyd(true);
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(simetrico, base, log, 100)) {
+            bitacora.recuperar(archivoTemporal.getAbsolutePath());
+            bitacora.iniciarLote();
+            assertTrue(bitacora.agregarConexion("CiudadD", "CiudadA", 1.0, 2.0, 3.0, 4.0));
+            assertTrue(bitacora.agregarConexion("CiudadA", "CiudadD", 6.0, 7.0, 8.0, 9.0));
+            CambiosLote cambios = bitacora.confirmarLote();
+            
+            // Las dos mutaciones son la misma carretera: un cambio por sentido
+            assertEquals(2, cambios.getNumCambios());
+            for (CambiosLote.Cambio cambio : cambios.getCambios()) {
+                assertEquals(Double.MAX_VALUE, cambio.anterior[0]);
+                assertEquals(6.0, cambio.nuevo[0]);
+            }
+            assertEquals(6.0, simetrico.getPeso(0, 0, 3));
+            assertEquals(6.0, simetrico.getPeso(0, 3, 0));
+            bitacora.compactar();
+        }
+        
+        // La instantánea escribe cada carretera una vez y se recarga igual
+        GrafoFloyd reiniciado = new GrafoFloyd(true);
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(reiniciado, base, log, 100)) {
+            assertEquals(0, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+        }
+        List<String> lineas = Files.readAllLines(base.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lineas.stream().filter(l -> !l.startsWith("#")).count());
+        for (int clima = 0; clima < 4; clima++) {
+            assertEquals(simetrico.contarConexiones(clima), reiniciado.contarConexiones(clima));
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    assertEquals(simetrico.getPeso(clima, i, j), reiniciado.getPeso(clima, i, j));
+                }
+            }
+        }
+    }
+    
+    // =====================================
+    // PRUEBAS PARA FLOYD FUERA DE MEMORIA
+    // =====================================
+    
+    @Test
+    @DisplayName("Floyd en disco - Mismo resultado que en memoria")
+    void testFloydEnDiscoIgualAMemoria() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("aleatorio.txt", 20, 60, 42).getAbsolutePath());
+        ResultadoFloyd enMemoria = grafo.aplicarFloyd(1);
+        
+        // Bloques de 3 (n no es múltiplo) y el mínimo de teselas en memoria
+        File salida = tempDir.resolve("floyd.tiles").toFile();
+        try (ResultadoFloydDisco enDisco = grafo.aplicarFloydEnDisco(1, salida, 3, 3)) {
+            int n = grafo.getNumCiudades();
+            assertEquals(n, enDisco.getNumCiudades());
+            double[] fila = new double[n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    assertEquals(enMemoria.distancias[i][j], enDisco.distancia(i, j), 1e-9);
+                }
+                // Lectura por tramos, incluida la última tesela con relleno
+                enDisco.leerDistancias(i, fila);
+                assertArrayEquals(enMemoria.distancias[i], fila, 1e-9);
+            }
+            // Cada ruta cuesta la distancia mínima; si esa ruta es la única, coincide tramo a tramo
+            List<String> ciudades = grafo.getCiudades();
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    List<String> camino = grafo.obtenerCamino(ciudades.get(i), ciudades.get(j), enDisco);
+                    List<String> esperado = grafo.obtenerCamino(ciudades.get(i), ciudades.get(j), enMemoria.siguiente);
+                    assertEquals(esperado == null, camino == null);
+                    if (camino == null) {
+                        continue;
+                    }
+                    assertEquals(enMemoria.distancias[i][j], costeCamino(1, camino), 1e-9);
+                    if (caminosMinimos(enMemoria.distancias, 1, i, j) == 1) {
+                        assertEquals(esperado, camino);
+                    }
+                }
+            }
+        }
+    }
+    
+    private double costeCamino(int tipoClima, List<String> camino) {
+        double coste = 0;
+        for (int p = 0; p + 1 < camino.size(); p++) {
+            coste += grafo.getPeso(tipoClima, grafo.getIndice(camino.get(p)), grafo.getIndice(camino.get(p + 1)));
+        }
+        return coste;
+    }
+    
+    // Cuenta (hasta 2) los caminos mínimos de origen a destino por los tramos que los
+    // forman; con pesos positivos los predecesores siempre están más cerca del origen
+    private int caminosMinimos(double[][] distancias, int tipoClima, int origen, int destino) {
+        int n = distancias.length;
+        double[] desde = distancias[origen];
+        Integer[] orden = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            orden[v] = v;
+        }
+        Arrays.sort(orden, Comparator.comparingDouble(v -> desde[v]));
+        int[] cuenta = new int[n];
+        cuenta[origen] = 1;
+        for (int v : orden) {
+            if (v == origen || desde[v] == Double.MAX_VALUE) continue;
+            for (int u = 0; u < n; u++) {
+                double peso = grafo.getPeso(tipoClima, u, v);
+                if (u != v && peso != Double.MAX_VALUE && desde[u] != Double.MAX_VALUE
+                        && desde[u] + peso == desde[v]) {
+                    cuenta[v] = Math.min(2, cuenta[v] + cuenta[u]);
+                }
+            }
+        }
+        return cuenta[destino];
+    }
+    
+    @Test
+    @DisplayName("Floyd en disco - Pesos del modo no dirigido y de un archivo binario")
+    void testFloydEnDiscoSinMatrizDePesos() throws IOException {
+        File texto = crearGrafoAleatorio("aleatorio.txt", 17, 50, 23);
+        
+        // Modo no dirigido: las teselas se llenan desde el triángulo empaquetado
+        GrafoFloyd simetrico = new GrafoFloyd(true);
+        simetrico.cargarDesdeArchivo(texto.getAbsolutePath());
+        ResultadoFloydSimetrico esperadoSimetrico = simetrico.aplicarFloydSimetrico(2);
+        File salida = tempDir.resolve("simetrico.tiles").toFile();
+        try (ResultadoFloydDisco enDisco = simetrico.aplicarFloydEnDisco(2, salida, 4, 3)) {
+            for (int i = 0; i < 17; i++) {
+                for (int j = 0; j < 17; j++) {
+                    assertEquals(esperadoSimetrico.distancia(i, j), enDisco.distancia(i, j), 1e-9);
+                }
+            }
+        }
+        
+        // Desde el archivo binario, sin cargar el grafo
+        File binario = tempDir.resolve("aleatorio.bin").toFile();
+        ArchivoGrafoBinario.convertirABinario(texto.getAbsolutePath(), binario.getAbsolutePath());
+        grafo.cargarDesdeArchivo(texto.getAbsolutePath());
+        ResultadoFloyd enMemoria = grafo.aplicarFloyd(2);
+        File desdeBinario = tempDir.resolve("binario.tiles").toFile();
+        try (ResultadoFloydDisco enDisco = FloydEnDisco.calcularDesdeBinario(binario, 2, desdeBinario, 4, 3)) {
+            assertEquals(17, enDisco.getNumCiudades());
+            for (int i = 0; i < 17; i++) {
+                for (int j = 0; j < 17; j++) {
+                    assertEquals(enMemoria.distancias[i][j], enDisco.distancia(i, j), 1e-9);
+                }
+            }
+        }
+        assertThrows(IOException.class,
+                () -> FloydEnDisco.calcularDesdeBinario(texto, 2, desdeBinario, 4, 3));
+    }
+    
+    @Test
+    @DisplayName("Floyd en disco - Rechaza un pool de teselas demasiado pequeño")
+    void testFloydEnDiscoPoolInvalido() throws IOException {
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        File salida = tempDir.resolve("invalido.tiles").toFile();
+        
+        assertThrows(IllegalArgumentException.class, () -> grafo.aplicarFloydEnDisco(0, salida, 2, 2));
+    }
+    
+    // =====================================
+    // PRUEBAS PARA FLOYD DISTRIBUIDO
+    // =====================================
+    
+    @Test
+    @DisplayName("Floyd distribuido - Mismo resultado con un trabajador reiniciado")
+    void testFloydDistribuidoConReinicio() throws Exception {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("distribuido.txt", 25, 90, 7).getAbsolutePath());
+        ResultadoFloyd esperado = grafo.aplicarFloyd(2);
+        
+        Process[] procesos = new Process[3];
+        int[] puertos = new int[3];
+        List<java.net.InetSocketAddress> direcciones = new ArrayList<>();
+        try {
+            for (int w = 0; w < 3; w++) {
+                procesos[w] = lanzarTrabajador(0);
+                puertos[w] = leerPuerto(procesos[w]);
+                direcciones.add(new java.net.InetSocketAddress("127.0.0.1", puertos[w]));
+            }
+            
+            // Tras la segunda ronda se mata el proceso del segundo trabajador y se relanza
+            // en el mismo puerto, sin ninguno de sus bloques
+            CoordinadorFloyd coordinador = new CoordinadorFloyd(direcciones, 4, 5);
+            ResultadoFloyd resultado = grafo.aplicarFloydDistribuido(2, coordinador, (pivotes, total) -> {
+                if (pivotes == 8) {
+                    try {
+                        procesos[1].destroyForcibly().waitFor();
+                        procesos[1] = lanzarTrabajador(puertos[1]);
+                        assertEquals(puertos[1], leerPuerto(procesos[1]));
+                    } catch (IOException | InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                return true;
+            });
+            
+            for (int i = 0; i < grafo.getNumCiudades(); i++) {
+                for (int j = 0; j < grafo.getNumCiudades(); j++) {
+                    assertEquals(esperado.distancias[i][j], resultado.distancias[i][j], 1e-9);
+                }
+            }
+            List<CoordinadorFloyd.EstadisticaRonda> rondas = coordinador.getEstadisticas();
+            assertEquals((grafo.getNumCiudades() + 3) / 4, rondas.size());
+            assertEquals(0, rondas.get(0).reenvios + rondas.get(1).reenvios);
+            assertEquals(1, rondas.get(2).reenvios);
+        } finally {
+            for (Process proceso : procesos) {
+                if (proceso != null) proceso.destroyForcibly().waitFor();
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Floyd distribuido - Un trabajador colgado se detecta por tiempo de espera")
+    void testFloydDistribuidoTrabajadorColgado() throws Exception {
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        
+        // Acepta conexiones (en la cola del sistema) pero nunca responde
+        try (java.net.ServerSocket colgado = new java.net.ServerSocket(0, 50, java.net.InetAddress.getLoopbackAddress())) {
+            List<java.net.InetSocketAddress> direcciones = Collections.singletonList(
+                    new java.net.InetSocketAddress("127.0.0.1", colgado.getLocalPort()));
+            CoordinadorFloyd coordinador = new CoordinadorFloyd(direcciones, 2, 1, 200);
+            
+            long inicio = System.nanoTime();
+            assertThrows(java.net.SocketTimeoutException.class, () -> grafo.aplicarFloydDistribuido(0, coordinador));
+            assertTrue(System.nanoTime() - inicio < 10_000_000_000L);
+        }
+    }
+    
+    // Proceso TrabajadorFloyd con el mismo classpath que las pruebas
+    private static Process lanzarTrabajador(int puerto) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "TrabajadorFloyd", String.valueOf(puerto))
+                .redirectErrorStream(true)
+                .start();
+    }
+    
+    // Espera a que el trabajador escuche y devuelve su puerto
+    private static int leerPuerto(Process proceso) throws IOException {
+        BufferedReader salida = new BufferedReader(new InputStreamReader(proceso.getInputStream()));
+        String linea = salida.readLine();
+        assertNotNull(linea, "El trabajador terminó sin escuchar");
+        assertTrue(linea.startsWith("Trabajador escuchando en el puerto "), linea);
+        return Integer.parseInt(linea.substring(linea.lastIndexOf(' ') + 1));
+    }
+    
+    // =====================================
+    // PRUEBAS PARA LOS MOTORES DE RUTAS
+    // =====================================
+    
+    @Test
+    @DisplayName("Motores - Prueba diferencial contra Floyd de referencia")
+    void testMotoresDiferencial() throws IOException {
+        probarMotoresDiferencial(false, 2024);
+    }
+    
+    @Test
+    @DisplayName("Motores - Prueba diferencial en modo no dirigido, con Floyd simétrico")
+    void testMotoresDiferencialNoDirigido() throws IOException {
+        assertTrue(SelectorMotor.motoresDisponibles(true).stream()
+                .anyMatch(motor -> motor instanceof MotorFloydSimetrico));
+        probarMotoresDiferencial(true, 2025);
+    }
+    
+    private void probarMotoresDiferencial(boolean noDirigido, long semilla) throws IOException {
+        Random semillas = new Random(semilla);
+        for (int caso = 0; caso < 12; caso++) {
+            // Tamaños y densidades variados, incluidos grafos fragmentados
+            int ciudades = 5 + semillas.nextInt(30);
+            int conexiones = 1 + semillas.nextInt(ciudades * 4);
+            GrafoFloyd aleatorio = new GrafoFloyd(noDirigido);
+            aleatorio.cargarDesdeArchivo(crearGrafoAleatorio("motores" + caso + ".txt",
+                    ciudades, conexiones, semillas.nextLong()).getAbsolutePath());
+            int clima = caso % 4;
+            int n = aleatorio.getNumCiudades();
+            
+            MotorFloyd referencia = new MotorFloyd();
+            referencia.calcular(aleatorio, clima);
+            for (MotorRutas motor : SelectorMotor.motoresDisponibles(noDirigido)) {
+                motor.calcular(aleatorio, clima);
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        String par = motor.getNombre() + " caso " + caso + " " + i + "->" + j;
+                        double esperada = referencia.distancia(i, j);
+                        assertEquals(esperada, motor.distancia(i, j), 1e-9, par);
+                        
+                        // Puede elegir otra ruta de igual costo, pero debe ser válida
+                        List<Integer> camino = motor.camino(i, j);
+                        assertEquals(referencia.camino(i, j) == null, camino == null, par);
+                        if (camino == null) continue;
+                        assertEquals(i, (int) camino.get(0), par);
+                        assertEquals(j, (int) camino.get(camino.size() - 1), par);
+                        double total = 0;
+                        for (int p = 0; p + 1 < camino.size(); p++) {
+                            total += aleatorio.getPeso(clima, camino.get(p), camino.get(p + 1));
+                        }
+                        assertEquals(esperada, total, 1e-9, par);
+                    }
+                }
+                // El centro se calcula fila por fila sobre cualquier motor, incluido el de disco
+                assertEquals(aleatorio.calcularCentro(referencia), aleatorio.calcularCentro(motor), motor.getNombre());
+                motor.invalidar();
+                assertThrows(IllegalStateException.class, () -> motor.distancia(0, 0));
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Selector de motor - Elección según forma del grafo y recursos")
+    void testSelectorMotor() {
+        long mucho = 1L << 34;
+        assertEquals("floyd", SelectorMotor.seleccionar(20, 0.01, mucho, 8).getNombre());
+        assertEquals("dijkstra", SelectorMotor.seleccionar(2000, 0.002, mucho, 1).getNombre());
+        assertEquals("floyd-disperso", SelectorMotor.seleccionar(2000, 0.1, mucho, 1).getNombre());
+        assertEquals("floyd", SelectorMotor.seleccionar(2000, 0.8, mucho, 1).getNombre());
+        // 100k ciudades requieren ~120 GB de resultados
+        assertEquals("floyd-disco", SelectorMotor.seleccionar(100_000, 0.001, mucho, 8).getNombre());
+    }
+    
+    @Test
+    @DisplayName("Motores - Consultas por nombre de ciudad a través de GrafoFloyd")
+    void testMotorConsultasPorNombre() throws IOException {
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        MotorRutas motor = SelectorMotor.seleccionar(grafo, 0);
+        motor.calcular(grafo, 0);
+        
+        assertEquals(Arrays.asList("CiudadA", "CiudadB", "CiudadC", "CiudadD"),
+                grafo.obtenerCamino("CiudadA", "CiudadD", motor));
+        assertEquals(grafo.calcularCentro(grafo.aplicarFloyd(0).distancias), grafo.calcularCentro(motor));
+        assertNull(grafo.obtenerCamino("CiudadX", "CiudadD", motor));
+    }
+    
+    // =====================================
+    // PRUEBAS PARA EL ÍNDICE DE ALCANCE
+    // =====================================
+    
+    @Test
+    @DisplayName("Índice de alcance - Isócronas y k más cercanas iguales a ordenar la fila")
+    void testIndiceAlcanceConsultas() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("alcance.txt", 30, 70, 13).getAbsolutePath());
+        MotorFloyd motor = new MotorFloyd();
+        motor.calcular(grafo, 1);
+        IndiceAlcance indice = IndiceAlcance.construir(motor, grafo.getNumCiudades());
+        int n = grafo.getNumCiudades();
+        
+        for (int origen = 0; origen < n; origen++) {
+            // Referencia: recorrer y ordenar la fila completa
+            List<Integer> ordenados = new ArrayList<>();
+            for (int j = 0; j < n; j++) {
+                if (j != origen && motor.distancia(origen, j) != Double.MAX_VALUE) ordenados.add(j);
+            }
+            final int o = origen;
+            ordenados.sort(Comparator.<Integer>comparingDouble(j -> motor.distancia(o, j))
+                    .thenComparingInt(j -> j));
+            
+            int[] cercanas = indice.masCercanas(origen, 5);
+            assertEquals(Math.min(5, ordenados.size()), cercanas.length);
+            for (int p = 0; p < cercanas.length; p++) {
+                assertEquals((int) ordenados.get(p), cercanas[p]);
+            }
+            for (double limite : new double[]{0, 20, 45.5, 1e9}) {
+                long esperadas = ordenados.stream().filter(j -> motor.distancia(o, j) <= limite).count();
+                int[] alcanzables = indice.alcanzables(origen, limite);
+                assertEquals(esperadas, alcanzables.length);
+                for (int destino : alcanzables) {
+                    assertTrue(motor.distancia(origen, destino) <= limite);
+                }
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Índice de alcance - Tras una mutación solo se reconstruyen las filas afectadas")
+    void testIndiceAlcanceActualizacion() throws IOException {
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        MotorFloyd motor = new MotorFloyd();
+        motor.calcular(grafo, 0);
+        IndiceAlcance indice = IndiceAlcance.construir(motor, grafo.getNumCiudades());
+        assertArrayEquals(new int[]{1, 2, 3}, indice.masCercanas(0, 3));
+        
+        // C -> D solo afecta a las filas que llegan a C (A, B y C); D no cambia
+        grafo.iniciarLote();
+        grafo.agregarConexion("CiudadC", "CiudadD", 1.0, 7.0, 9.0, 11.0);
+        CambiosLote cambios = grafo.confirmarLote();
+        motor.actualizar(grafo, 0, cambios);
+        assertEquals(3, indice.actualizar(motor, cambios, 0));
+        assertEquals(0, indice.actualizar(motor, cambios, 0));
+        assertEquals(0, indice.actualizar(motor));
+        // El lote no cambia los tiempos con lluvia
+        assertEquals(0, indice.actualizar(motor, cambios, 1));
+        
+        assertArrayEquals(new int[]{3}, indice.masCercanas(2, 5));
+        assertArrayEquals(new int[]{2, 3}, indice.alcanzables(1, 9.0));
+        assertEquals(9.0, indice.distanciaEnPosicion(1, 1), 0.001);
+        assertArrayEquals(new int[0], indice.masCercanas(2, 0));
+        assertThrows(IllegalArgumentException.class, () -> indice.masCercanas(2, -1));
+    }
+    
+    @Test
+    @DisplayName("Índice de alcance - La actualización por lote coincide con reconstruirlo")
+    void testIndiceAlcanceActualizacionPorLote() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("alcance_lote.txt", 40, 120, 7).getAbsolutePath());
+        int n = grafo.getNumCiudades();
+        MotorFloyd motor = new MotorFloyd();
+        motor.calcular(grafo, 0);
+        IndiceAlcance indice = IndiceAlcance.construir(motor, n);
+        
+        // Cierres y conexiones nuevas mezclados, con ciudades que dejan de ser alcanzables
+        List<String> ciudades = grafo.getCiudades();
+        Random random = new Random(11);
+        grafo.iniciarLote();
+        for (int m = 0; m < 6; m++) {
+            int i = random.nextInt(n);
+            int j = (i + 1 + random.nextInt(n - 1)) % n;
+            if (m % 2 == 0) {
+                grafo.eliminarConexion(ciudades.get(i), ciudades.get(j));
+            } else {
+                grafo.agregarConexion(ciudades.get(i), ciudades.get(j), 2.0, 3.0, 4.0, 5.0);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j && grafo.getPeso(0, i, j) != Double.MAX_VALUE && random.nextInt(10) == 0) {
+                    grafo.eliminarConexion(ciudades.get(i), ciudades.get(j));
+                }
+            }
+        }
+        CambiosLote cambios = grafo.confirmarLote();
+        motor.calcular(grafo, 0);
+        indice.actualizar(motor, cambios, 0);
+        
+        IndiceAlcance reconstruido = IndiceAlcance.construir(motor, n);
+        for (int origen = 0; origen < n; origen++) {
+            assertArrayEquals(reconstruido.masCercanas(origen, n), indice.masCercanas(origen, n));
+        }
+    }
+    
+    // =====================================
+    // PRUEBAS PARA LA CACHÉ DE RUTAS
+    // =====================================
+    
+    private RutaCalculada rutaDePrueba(String origen, String destino, long version) {
+        return new RutaCalculada(origen, destino, 0, 1.0, Arrays.asList(origen, destino),
+                origen + " -> " + destino, version);
+    }
+    
+    @Test
+    @DisplayName("Caché de rutas - Aciertos y descarte por versión del grafo")
+    void testCacheRutasVersion() throws IOException {
+        grafo.cargarDesdeArchivo(archivoTemporal.getAbsolutePath());
+        CacheRutas cache = new CacheRutas(64, 4);
+        int[] cargas = {0};
+        
+        for (int r = 0; r < 3; r++) {
+            long version = grafo.getVersion();
+            RutaCalculada ruta = cache.obtener("CiudadA", "CiudadB", 0, version, () -> {
+                cargas[0]++;
+                return rutaDePrueba("CiudadA", "CiudadB", version);
+            });
+            assertEquals("CiudadA -> CiudadB", ruta.texto);
+        }
+        assertEquals(1, cargas[0]);
+        assertEquals(2, cache.getAciertos());
+        
+        // Otro clima es otra entrada
+        cache.obtener("CiudadA", "CiudadB", 1, grafo.getVersion(), () -> {
+            cargas[0]++;
+            return rutaDePrueba("CiudadA", "CiudadB", grafo.getVersion());
+        });
+        assertEquals(2, cargas[0]);
+        
+        // Una mutación cambia la versión y la entrada deja de ser válida
+        long anterior = grafo.getVersion();
+        grafo.eliminarConexion("CiudadA", "CiudadB");
+        assertNotEquals(anterior, grafo.getVersion());
+        long version = grafo.getVersion();
+        cache.obtener("CiudadA", "CiudadB", 0, version, () -> {
+            cargas[0]++;
+            return rutaDePrueba("CiudadA", "CiudadB", version);
+        });
+        assertEquals(3, cargas[0]);
+        assertEquals(1, cache.getObsoletas());
+        assertEquals(2.0 / 5.0, cache.getTasaAciertos(), 1e-9);
+    }
+    
+    @Test
+    @DisplayName("Caché de rutas - Acotada y resistente a recorridos de rutas únicas")
+    void testCacheRutasDesalojo() {
+        CacheRutas cache = new CacheRutas(10, 1);
+        // Ruta popular: dos consultas la pasan al tramo protegido
+        for (int r = 0; r < 2; r++) {
+            cache.obtener("Mixco", "GuatemalaCity", 0, 1, () -> rutaDePrueba("Mixco", "GuatemalaCity", 1));
+        }
+        // Un recorrido de 100 rutas distintas no debe desalojarla
+        for (int d = 0; d < 100; d++) {
+            String destino = "C" + d;
+            cache.obtener("Mixco", destino, 0, 1, () -> rutaDePrueba("Mixco", destino, 1));
+        }
+        assertTrue(cache.getTamano() <= 10);
+        assertTrue(cache.getDesalojos() >= 90);
+        
+        long aciertos = cache.getAciertos();
+        cache.obtener("Mixco", "GuatemalaCity", 0, 1, () -> {
+            throw new AssertionError("La ruta popular fue desalojada");
+        });
+        assertEquals(aciertos + 1, cache.getAciertos());
+    }
+    
+    // =====================================
+    // PRUEBAS PARA EL RECÁLCULO EN SEGUNDO PLANO
+    // =====================================
+    
+    @Test
+    @DisplayName("Recálculo en segundo plano - Resultado idéntico y avance completo")
+    void testRecalculoSegundoPlano() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("recalculo.txt", 60, 150, 11).getAbsolutePath());
+        MotorFloyd motor = new MotorFloyd();
+        try (RecalculoFloyd recalculo = new RecalculoFloyd()) {
+            TareaRecalculo<ResultadoFloyd> tarea = motor.calcularEnSegundoPlano(grafo, 2, recalculo);
+            ResultadoFloyd resultado = tarea.join();
+            
+            assertEquals(grafo.getNumCiudades(), tarea.getPivotes());
+            assertEquals(grafo.getNumCiudades(), tarea.getTotal());
+            assertEquals(1.0, tarea.getProgreso(), 1e-9);
+            assertTrue(tarea.toString().endsWith("terminado"));
+            assertNull(motor.getRecalculoPendiente());
+            assertArrayEquals(grafo.aplicarFloyd(2).distancias, resultado.distancias);
+            assertSame(resultado, motor.getResultado());
+        }
+    }
+    
+    @Test
+    @DisplayName("Recálculo en segundo plano - Una mutación o solicitud nueva reemplaza al anterior")
+    void testRecalculoReemplazado() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("reemplazo.txt", 400, 2000, 12).getAbsolutePath());
+        try (RecalculoFloyd recalculo = new RecalculoFloyd()) {
+            // La tarea de lluvia ocupa el hilo de fondo; la de clima normal queda en cola
+            TareaRecalculo<ResultadoFloyd> lluvia = recalculo.solicitar(grafo, 1, GrafoFloyd::calcularFloyd);
+            TareaRecalculo<ResultadoFloyd> primera = recalculo.solicitar(grafo, 0, GrafoFloyd::calcularFloyd);
+            List<String> ciudades = grafo.getCiudades();
+            grafo.agregarConexion(ciudades.get(0), ciudades.get(399), 0.5, 0.5, 0.5, 0.5);
+            TareaRecalculo<ResultadoFloyd> segunda = recalculo.solicitar(grafo, 0, GrafoFloyd::calcularFloyd);
+            
+            assertTrue(primera.isCancelled());
+            assertTrue(primera.isSuperada());
+            assertSame(segunda, recalculo.getTarea(0));
+            assertEquals(grafo.getVersion(), segunda.getVersion());
+            assertEquals(0.5, segunda.join().distancias[0][399]);
+            assertArrayEquals(grafo.aplicarFloyd(0).distancias, segunda.join().distancias);
+            
+            // La mutación dejó obsoleta la tarea de lluvia, que se detuvo sin terminar
+            assertThrows(java.util.concurrent.CancellationException.class, lluvia::join);
+            assertTrue(lluvia.isSuperada());
+            assertTrue(lluvia.getPivotes() < 400);
+        }
+    }
+    
+    @Test
+    @DisplayName("Recálculo en segundo plano - Cada motor usa su propia rutina")
+    void testRecalculoRutinaDelMotor() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("rutina.txt", 50, 80, 14).getAbsolutePath());
+        java.util.concurrent.atomic.AtomicInteger enSegundoPlano = new java.util.concurrent.atomic.AtomicInteger();
+        MotorFloydDisperso motor = new MotorFloydDisperso() {
+            @Override
+            protected void ejecutar(double[][] pesos, ResultadoFloyd destino, ProgresoFloyd progreso) {
+                if (progreso != null) {
+                    enSegundoPlano.incrementAndGet();
+                }
+                super.ejecutar(pesos, destino, progreso);
+            }
+        };
+        try (RecalculoFloyd recalculo = new RecalculoFloyd()) {
+            ResultadoFloyd resultado = motor.calcularEnSegundoPlano(grafo, 3, recalculo).join();
+            assertEquals(1, enSegundoPlano.get());
+            assertArrayEquals(grafo.aplicarFloydDisperso(3).distancias, resultado.distancias);
+        }
+    }
+    
+    @Test
+    @DisplayName("Recálculo en segundo plano - Dijkstra, Floyd simétrico y en disco")
+    void testRecalculoOtrosMotores() throws IOException {
+        GrafoFloyd simetrico = new GrafoFloyd(true);
+        simetrico.cargarDesdeArchivo(crearGrafoAleatorio("otros-motores.txt", 40, 100, 17).getAbsolutePath());
+        int n = simetrico.getNumCiudades();
+        double[][] esperado = simetrico.aplicarFloyd(1).distancias;
+        
+        try (RecalculoFloyd recalculo = new RecalculoFloyd()) {
+            for (MotorRutas motor : Arrays.asList(new MotorDijkstra(), new MotorFloydSimetrico(),
+                    new MotorFloydEnDisco(8, 4))) {
+                TareaRecalculo<?> tarea = motor.calcularEnSegundoPlano(simetrico, 1, recalculo);
+                tarea.join();
+                assertEquals(n, tarea.getPivotes(), motor.getNombre());
+                assertNull(motor.getRecalculoPendiente(), motor.getNombre());
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        assertEquals(esperado[i][j], motor.distancia(i, j), 1e-9, motor.getNombre());
+                    }
+                }
+                motor.invalidar();
+            }
+        }
+        
+        // Cada rutina se detiene en el primer aviso de progreso que devuelve false
+        int[] avance = {0};
+        ProgresoFloyd hastaCinco = (pivotes, total) -> {
+            avance[0] = pivotes;
+            return pivotes < 5;
+        };
+        assertThrows(java.util.concurrent.CancellationException.class, () ->
+                MotorDijkstra.preparar(simetrico, 1).calcular(hastaCinco));
+        assertEquals(5, avance[0]);
+        assertThrows(java.util.concurrent.CancellationException.class, () ->
+                GrafoFloyd.calcularFloydSimetrico(n, simetrico.copiarTriangulo(1), hastaCinco));
+        assertEquals(5, avance[0]);
+        // En disco se avisa por bloque de pivotes
+        FloydEnDisco enDisco = simetrico.prepararFloydEnDisco(1, tempDir.resolve("cancelado.teselas").toFile(), 8, 4);
+        assertThrows(java.util.concurrent.CancellationException.class, () -> enDisco.completar(hastaCinco));
+        assertEquals(8, avance[0]);
+    }
+    
+    @Test
+    @DisplayName("Recálculo en segundo plano - Consultar tras cancelar o fallar recalcula aquí mismo")
+    void testRecalculoCanceladoYConsulta() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("cancelar-consultar.txt", 300, 1500, 15).getAbsolutePath());
+        List<String> ciudades = grafo.getCiudades();
+        int ultima = ciudades.size() - 1;
+        MotorFloyd motor = new MotorFloyd();
+        motor.calcular(grafo, 0);
+        
+        try (RecalculoFloyd recalculo = new RecalculoFloyd()) {
+            grafo.agregarConexion(ciudades.get(0), ciudades.get(ultima), 0.25, 0.5, 0.5, 0.5);
+            TareaRecalculo<ResultadoFloyd> tarea = motor.calcularEnSegundoPlano(grafo, 0, recalculo);
+            tarea.cancel(false);
+            assertEquals(0.25, motor.distancia(0, ultima));
+            assertArrayEquals(grafo.aplicarFloyd(0).distancias, motor.getResultado().distancias);
+            assertNull(motor.getRecalculoPendiente());
+        }
+        
+        // Un recálculo que falla en el hilo de fondo tampoco deja al motor sin resultado
+        MotorFloyd fallido = new MotorFloyd() {
+            @Override
+            protected void ejecutar(double[][] pesos, ResultadoFloyd destino, ProgresoFloyd progreso) {
+                if (progreso != null) {
+                    throw new IllegalStateException("fallo simulado");
+                }
+                super.ejecutar(pesos, destino, progreso);
+            }
+        };
+        try (RecalculoFloyd recalculo = new RecalculoFloyd()) {
+            TareaRecalculo<ResultadoFloyd> tarea = fallido.calcularEnSegundoPlano(grafo, 1, recalculo);
+            assertThrows(java.util.concurrent.CompletionException.class, tarea::join);
+            assertArrayEquals(grafo.aplicarFloyd(1).distancias, fallido.getResultado().distancias);
+        }
+    }
+    
+    @Test
+    @DisplayName("Recálculo en segundo plano - Un resultado cancelado tras el último pivote no se publica")
+    void testRecalculoCanceladoAlTerminar() throws Exception {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("cancelado-al-terminar.txt", 30, 80, 16).getAbsolutePath());
+        MotorFloyd motor = new MotorFloyd();
+        try (RecalculoFloyd recalculo = new RecalculoFloyd()) {
+            ResultadoFloyd vigente = motor.calcularEnSegundoPlano(grafo, 0, recalculo).join();
+            assertSame(vigente, motor.getResultado());
+            
+            // La cancelación llega cuando el cálculo ya terminó, antes de completar la tarea
+            java.util.concurrent.CompletableFuture<TareaRecalculo<ResultadoFloyd>> cancelada = new java.util.concurrent.CompletableFuture<>();
+            cancelada.complete(recalculo.solicitar(grafo, 0, (pesos, destino, progreso) -> {
+                GrafoFloyd.calcularFloyd(pesos, destino, progreso);
+                cancelada.join().cancel(false);
+            }));
+            assertThrows(java.util.concurrent.CancellationException.class, () -> cancelada.join().join());
+            
+            // El siguiente recálculo no puede escribir sobre el resultado que el motor sirve
+            TareaRecalculo<ResultadoFloyd> siguiente = recalculo.solicitar(grafo, 0, GrafoFloyd::calcularFloyd);
+            assertNotSame(vigente, siguiente.join());
+            assertArrayEquals(grafo.aplicarFloyd(0).distancias, vigente.distancias);
+        }
+    }
+    
+    @Test
+    @DisplayName("Recálculo en segundo plano - Cancelar en un pivote conserva el resultado publicado")
+    void testRecalculoCancelado() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("cancelado.txt", 30, 80, 13).getAbsolutePath());
+        EspacioTrabajoFloyd espacio = new EspacioTrabajoFloyd();
+        ResultadoFloyd publicado = grafo.aplicarFloyd(0, espacio);
+        double[][] esperado = grafo.aplicarFloyd(0).distancias;
+        
+        int[] avance = {0};
+        assertThrows(java.util.concurrent.CancellationException.class, () ->
+                GrafoFloyd.aplicarFloyd(grafo.copiarPesos(1), espacio, (pivotes, total) -> {
+                    avance[0] = pivotes;
+                    return pivotes < 5;
+                }));
+        assertEquals(5, avance[0]);
+        assertSame(publicado, espacio.getPublicado());
+        
+        // El siguiente cálculo tampoco sobrescribe el buffer publicado
+        ResultadoFloyd siguiente = grafo.aplicarFloyd(1, espacio);
+        assertNotSame(publicado, siguiente);
+        assertArrayEquals(esperado, publicado.distancias);
+    }
+    
+    // =====================================
+    // PRUEBAS PARA LA REPRODUCCIÓN DE CARGA
+    // =====================================
+    
+    @Test
+    @DisplayName("Histograma de latencias - Percentiles con error relativo menor que 0.1 %")
+    void testHistogramaLatencias() {
+        HistogramaLatencias histograma = new HistogramaLatencias();
+        for (long v = 1; v <= 100_000; v++) {
+            histograma.registrar(v * 1000);       // 1 µs .. 100 ms
+        }
+        assertEquals(100_000, histograma.getTotal());
+        assertEquals(100_000_000L, histograma.getMaximo());
+        assertEquals(50_000_000.0, histograma.percentil(50), 50_000_000 * 0.001);
+        assertEquals(99_000_000.0, histograma.percentil(99), 99_000_000 * 0.001);
+        assertEquals(99_900_000.0, histograma.percentil(99.9), 99_900_000 * 0.001);
+        assertEquals(100_000_000L, histograma.percentil(100));
+        
+        // Valores pequeños exactos y cubetas contiguas
+        HistogramaLatencias exacto = new HistogramaLatencias();
+        exacto.registrar(7);
+        assertEquals(7, exacto.percentil(50));
+        for (long v = 2000; v < 1_000_000; v += 997) {
+            assertTrue(HistogramaLatencias.limiteSuperior(HistogramaLatencias.indice(v)) >= v);
+            assertEquals(HistogramaLatencias.indice(v) + 1,
+                    HistogramaLatencias.indice(HistogramaLatencias.limiteSuperior(HistogramaLatencias.indice(v)) + 1));
+        }
+    }
+    
+    @Test
+    @DisplayName("Traza de carga - Se graba y se vuelve a cargar igual")
+    void testTrazaCargaGrabada() throws IOException {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("traza-grafo.txt", 30, 90, 21).getAbsolutePath());
+        TrazaCarga traza = TrazaCarga.generar(grafo, 2000, 3);
+        File archivo = tempDir.resolve("traza.txt").toFile();
+        traza.guardar(archivo.getAbsolutePath());
+        
+        TrazaCarga cargada = TrazaCarga.cargar(archivo.getAbsolutePath());
+        assertEquals(traza.getOperaciones().size(), cargada.getOperaciones().size());
+        for (int i = 0; i < cargada.getOperaciones().size(); i++) {
+            assertEquals(traza.getOperaciones().get(i).toString(), cargada.getOperaciones().get(i).toString());
+        }
+        // La mezcla generada incluye todos los tipos de operación
+        Set<TrazaCarga.Tipo> tipos = EnumSet.noneOf(TrazaCarga.Tipo.class);
+        cargada.getOperaciones().forEach(o -> tipos.add(o.tipo));
+        assertEquals(EnumSet.allOf(TrazaCarga.Tipo.class), tipos);
+        
+        try (PrintWriter writer = new PrintWriter(archivo)) {
+            writer.println("ruta Mixco");
+        }
+        assertThrows(IOException.class, () -> TrazaCarga.cargar(archivo.getAbsolutePath()));
+    }
+    
+    @Test
+    @DisplayName("Reproductor de carga - Todas las operaciones medidas y rutas al día")
+    void testReproductorCarga() throws Exception {
+        grafo.cargarDesdeArchivo(crearGrafoAleatorio("carga.txt", 40, 120, 22).getAbsolutePath());
+        TrazaCarga traza = TrazaCarga.generar(grafo, 3000, 4);
+        ReproductorCarga.Informe informe = ReproductorCarga.reproducir(grafo, traza, 50_000, 4);
+        
+        assertEquals(0, informe.errores);
+        assertEquals(3000, informe.latencia.getTotal());
+        assertEquals(3000, informe.servicio.getTotal());
+        long porTipo = informe.latenciaPorTipo.values().stream().mapToLong(HistogramaLatencias::getTotal).sum();
+        assertEquals(3000, porTipo);
+        assertTrue(informe.getRendimiento() > 0);
+        // La latencia desde el envío previsto nunca es menor que el tiempo de servicio
+        assertTrue(informe.latencia.percentil(99) >= informe.servicio.percentil(99));
+        assertTrue(informe.recalculosLanzados > 0);
+        assertTrue(informe.toString().contains("p999"));
+    }
+    
+    // =====================================
+    // PRUEBAS PARA LA BITÁCORA DE MUTACIONES
+    // =====================================
+    
+    @Test
+    @DisplayName("Bitácora - Las mutaciones sobreviven a un reinicio")
+    void testBitacoraRecuperaMutaciones() throws IOException {
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(grafo, base, log, 100)) {
+            assertEquals(0, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+            bitacora.eliminarConexion("CiudadA", "CiudadB");
+            bitacora.agregarConexion("CiudadD", "CiudadA", 1.0, 2.0, 3.0, 4.0);
+            assertFalse(bitacora.agregarConexion("CiudadX", "CiudadA", 1.0, 2.0, 3.0, 4.0));
+        }
+        
+        GrafoFloyd reiniciado = new GrafoFloyd();
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(reiniciado, base, log, 100)) {
+            assertEquals(2, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+        }
+        ResultadoFloyd resultado = reiniciado.aplicarFloyd(0);
+        // Sin A->B no queda ninguna ruta hacia CiudadB (B ya no tiene conexiones entrantes)
+        assertNull(reiniciado.obtenerCamino("CiudadA", "CiudadB", resultado.siguiente));
+        assertEquals(Arrays.asList("CiudadD", "CiudadA"),
+                reiniciado.obtenerCamino("CiudadD", "CiudadA", resultado.siguiente));
+    }
+    
+    @Test
+    @DisplayName("Bitácora - Un lote se escribe en disco antes de aplicarse")
+    void testBitacoraLote() throws IOException {
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(grafo, base, log, 100)) {
+            bitacora.recuperar(archivoTemporal.getAbsolutePath());
+            // Un lote descartado no deja rastro ni en la bitácora ni en el grafo
+            bitacora.iniciarLote();
+            bitacora.eliminarConexion("CiudadA", "CiudadB");
+            bitacora.descartarLote();
+            assertEquals(0, log.length());
+            assertEquals(0, bitacora.getUltimaSecuencia());
+            
+            bitacora.iniciarLote();
+            bitacora.eliminarConexion("CiudadA", "CiudadB");
+            bitacora.eliminarConexion("CiudadC", "CiudadD");
+            assertEquals(0, log.length());
+            assertEquals(10.0, grafo.getPeso(0, grafo.getIndice("CiudadA"), grafo.getIndice("CiudadB")));
+            CambiosLote cambios = bitacora.confirmarLote();
+            assertEquals(2, cambios.getNumCambios());
+            assertTrue(log.length() > 0);
+            assertEquals(2, bitacora.getUltimaSecuencia());
+        }
+        
+        GrafoFloyd reiniciado = new GrafoFloyd();
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(reiniciado, base, log, 100)) {
+            assertEquals(2, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+        }
+    }
+    
+    @Test
+    @DisplayName("Bitácora - Recuperar dos veces sin cerrar se rechaza")
+    void testBitacoraRecuperarDosVeces() throws IOException {
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        BitacoraMutaciones bitacora = new BitacoraMutaciones(grafo, base, log, 5);
+        bitacora.recuperar(archivoTemporal.getAbsolutePath());
+        assertThrows(IllegalStateException.class, () -> bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+        bitacora.eliminarConexion("CiudadA", "CiudadB");
+        bitacora.eliminarConexion("CiudadB", "CiudadC");
+        bitacora.close();
+        
+        // Tras cerrar se puede recuperar de nuevo y el umbral cuenta solo la bitácora actual
+        assertEquals(2, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+        bitacora.eliminarConexion("CiudadC", "CiudadD");
+        bitacora.close();
+        assertFalse(base.exists());
+        assertEquals(3, Files.readAllLines(log.toPath(), StandardCharsets.UTF_8).size());
+    }
+    
+    @Test
+    @DisplayName("Bitácora - Compactación y cola truncada")
+    void testBitacoraCompactacionYColaTruncada() throws IOException {
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        
+        // Compacta cada 2 registros: la tercera mutación queda sola en la bitácora
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(grafo, base, log, 2)) {
+            bitacora.recuperar(archivoTemporal.getAbsolutePath());
+            bitacora.eliminarConexion("CiudadA", "CiudadB");
+            bitacora.agregarConexion("CiudadD", "CiudadA", 1.0, 2.0, 3.0, 4.0);
+            bitacora.eliminarConexion("CiudadC", "CiudadD");
+            assertEquals(3, bitacora.getUltimaSecuencia());
+        }
+        assertTrue(base.exists());
+        
+        // Simular una caída a mitad de escritura: el registro se lee completo pero le
+        // falta el salto de línea final, así que no llegó entero a disco
+        long longitudCompleta = log.length();
+        try (FileWriter writer = new FileWriter(log, true)) {
+            writer.write("4 E CiudadA CiudadC");
+        }
+        
+        GrafoFloyd reiniciado = new GrafoFloyd();
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(reiniciado, base, log, 100)) {
+            assertEquals(1, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+            assertEquals(3, bitacora.getUltimaSecuencia());
+        }
+        assertEquals(longitudCompleta, log.length());
+        assertEquals(25.0, reiniciado.getPeso(0, reiniciado.getIndice("CiudadA"), reiniciado.getIndice("CiudadC")));
+        ResultadoFloyd resultado = reiniciado.aplicarFloyd(0);
+        assertNull(reiniciado.obtenerCamino("CiudadC", "CiudadD", resultado.siguiente));
+        assertNotNull(reiniciado.obtenerCamino("CiudadD", "CiudadC", resultado.siguiente));
+    }
+    
+    @Test
+    @DisplayName("Bitácora - El umbral de compactación alcanzado a mitad de un lote")
+    void testBitacoraCompactacionEnLote() throws IOException {
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        
+        // El umbral es 2 y el lote tiene 3 mutaciones: se cruza en la segunda
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(grafo, base, log, 2)) {
+            bitacora.recuperar(archivoTemporal.getAbsolutePath());
+            bitacora.iniciarLote();
+            bitacora.eliminarConexion("CiudadA", "CiudadB");
+            bitacora.agregarConexion("CiudadD", "CiudadA", 1.0, 2.0, 3.0, 4.0);
+            assertThrows(IllegalStateException.class, bitacora::compactar);
+            bitacora.eliminarConexion("CiudadC", "CiudadD");
+            assertFalse(base.exists());
+            bitacora.confirmarLote();
+            assertTrue(base.exists());
+            assertEquals(0, log.length());
+            assertEquals(3, bitacora.getUltimaSecuencia());
+        }
+        
+        // La instantánea ya incluye todo el lote
+        GrafoFloyd reiniciado = new GrafoFloyd();
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(reiniciado, base, log, 100)) {
+            assertEquals(0, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+            assertEquals(3, bitacora.getUltimaSecuencia());
+        }
+        ResultadoFloyd resultado = reiniciado.aplicarFloyd(0);
+        assertNull(reiniciado.obtenerCamino("CiudadA", "CiudadB", resultado.siguiente));
+        assertNull(reiniciado.obtenerCamino("CiudadC", "CiudadD", resultado.siguiente));
+        assertEquals(Arrays.asList("CiudadD", "CiudadA"),
+                reiniciado.obtenerCamino("CiudadD", "CiudadA", resultado.siguiente));
+    }
+    
+    @Test
+    @DisplayName("Bitácora - La instantánea conserva ciudades sin conexiones")
+    void testBitacoraCiudadAislada() throws IOException {
+        File base = tempDir.resolve("base.txt").toFile();
+        File log = tempDir.resolve("grafo.bitacora").toFile();
+        
+        // Al cerrar C->D, CiudadD se queda sin conexiones justo antes de compactar
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(grafo, base, log, 1)) {
+            bitacora.recuperar(archivoTemporal.getAbsolutePath());
+            bitacora.eliminarConexion("CiudadC", "CiudadD");
+        }
+        
+        GrafoFloyd reiniciado = new GrafoFloyd();
+        try (BitacoraMutaciones bitacora = new BitacoraMutaciones(reiniciado, base, log, 100)) {
+            assertEquals(0, bitacora.recuperar(archivoTemporal.getAbsolutePath()));
+            assertEquals(4, reiniciado.getNumCiudades());
+            assertTrue(bitacora.agregarConexion("CiudadD", "CiudadA", 1.0, 2.0, 3.0, 4.0));
+        }
+        
+        // Un registro completo que no se puede reaplicar es un error, no una cola truncada
+        try (FileWriter writer = new FileWriter(log, true)) {
+            writer.write("3 A CiudadX CiudadA 1.0 2.0 3.0 4.0\n");
+        }
+        BitacoraMutaciones corrupta = new BitacoraMutaciones(new GrafoFloyd(), base, log, 100);
+        assertThrows(IOException.class, () -> corrupta.recuperar(archivoTemporal.getAbsolutePath()));
+    }
+    
     // =====================================
     // PRUEBAS DE CASOS LÍMITE
     // =====================================
@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos al estilo de HdrHistogram: cubetas exactas
+ * hasta 2048 ns y, a partir de ahí, 1024 cubetas por potencia de dos, con un error
+ * relativo menor que 0.1 % en cualquier percentil. Admite registros concurrentes sin
+ * candados y ocupa lo mismo sin importar cuántos valores se registren.
+ */
+public class HistogramaLatencias {
+
+    private static final int BITS_SUBCUBETA = 11;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;             // 2048
+    private static final int MEDIAS_SUBCUBETAS = SUBCUBETAS / 2;           // 1024
+    private static final long MAXIMO_REGISTRABLE = 3_600_000_000_000L;      // 1 hora
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(indice(MAXIMO_REGISTRABLE) + 1);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /** Registra un valor; los negativos cuentan como 0 y los mayores de una hora como una hora. */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cuentas.incrementAndGet(indice(Math.min(valor, MAXIMO_REGISTRABLE)));
+        total.increment();
+        suma.add(valor);
+        maximo.accumulateAndGet(valor, Math::max);
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getMedia() {
+        long n = getTotal();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    /**
+     * Valor por debajo del cual queda el porcentaje indicado de los registros (el mayor
+     * valor equivalente de su cubeta, acotado por el máximo registrado).
+     */
+    public long percentil(double porcentaje) {
+        long n = getTotal();
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(porcentaje / 100 * n));
+        long acumulado = 0;
+        for (int i = 0; i < cuentas.length(); i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    //----------------------------------------------------------------------
+    // CUBETAS LOG-LINEALES
+    //----------------------------------------------------------------------
+    static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        // Desplazamiento que deja el valor en [1024, 2048)
+        int exponente = 63 - Long.numberOfLeadingZeros(valor) - (BITS_SUBCUBETA - 1);
+        return SUBCUBETAS + (exponente - 1) * MEDIAS_SUBCUBETAS
+                + (int) ((valor >>> exponente) - MEDIAS_SUBCUBETAS);
+    }
+
+    static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = (indice - SUBCUBETAS) / MEDIAS_SUBCUBETAS + 1;
+        long inferior = (long) ((indice - SUBCUBETAS) % MEDIAS_SUBCUBETAS + MEDIAS_SUBCUBETAS) << exponente;
+        return inferior + (1L << exponente) - 1;
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Índice de alcance para un clima: por cada ciudad origen guarda sus destinos
+ * alcanzables ordenados por distancia. Las consultas de isócronas ("¿a qué ciudades
+ * se llega en 2 horas?") usan búsqueda binaria y las de k ciudades más cercanas leen
+ * un prefijo, sin recorrer ni ordenar la fila completa en cada consulta.
+ */
+public class IndiceAlcance {
+
+    private static final double INFINITO = Double.MAX_VALUE;
+
+    private final int numCiudades;
+    private final int[][] destinos;               // origen -> destinos ordenados por distancia
+    private final double[][] distancias;          // origen -> distancias en el mismo orden
+
+    private IndiceAlcance(int numCiudades) {
+        this.numCiudades = numCiudades;
+        this.destinos = new int[numCiudades][];
+        this.distancias = new double[numCiudades][];
+    }
+
+    /** Construye el índice a partir de un motor ya calculado, una fila por hilo. */
+    public static IndiceAlcance construir(MotorRutas motor, int numCiudades) {
+        IndiceAlcance indice = new IndiceAlcance(numCiudades);
+        IntStream.range(0, numCiudades).parallel().forEach(origen -> indice.construirFila(motor, origen));
+        return indice;
+    }
+
+    /**
+     * Pone al día el índice tras recalcular el motor por completo; revisa todas las
+     * filas y solo reordena las que cambiaron.
+     *
+     * @return número de filas reconstruidas
+     */
+    public int actualizar(MotorRutas motor) {
+        return IntStream.range(0, numCiudades).parallel().map(origen -> {
+            if (!filaCambio(motor, origen)) {
+                return 0;
+            }
+            construirFila(motor, origen);
+            return 1;
+        }).sum();
+    }
+
+    /**
+     * Pone al día el índice tras aplicar un lote al motor. Una fila solo puede cambiar
+     * si su origen ya llegaba al origen de alguna conexión modificada en el clima; las
+     * demás ni se revisan.
+     *
+     * @return número de filas reconstruidas
+     */
+    public int actualizar(MotorRutas motor, CambiosLote cambios, int tipoClima) {
+        List<CambiosLote.Cambio> delClima = cambios.cambiosDeClima(tipoClima);
+        if (delClima.isEmpty()) {
+            return 0;
+        }
+        boolean[] modificadas = new boolean[numCiudades];
+        for (CambiosLote.Cambio cambio : delClima) {
+            modificadas[cambio.origen] = true;
+        }
+        return IntStream.range(0, numCiudades).parallel().map(origen -> {
+            if (!puedeCambiar(origen, modificadas) || !filaCambio(motor, origen)) {
+                return 0;
+            }
+            construirFila(motor, origen);
+            return 1;
+        }).sum();
+    }
+
+    /** Destinos a distancia menor o igual que el límite, del más cercano al más lejano. */
+    public int[] alcanzables(int origen, double limite) {
+        double[] fila = distancias[origen];
+        // Primera posición con distancia > límite
+        int bajo = 0;
+        int alto = fila.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (fila[medio] <= limite) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return Arrays.copyOf(destinos[origen], bajo);
+    }
+
+    /** Las k ciudades más cercanas al origen (menos si no hay tantas alcanzables). */
+    public int[] masCercanas(int origen, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("La cantidad de ciudades no puede ser negativa: " + k);
+        }
+        return Arrays.copyOf(destinos[origen], Math.min(k, destinos[origen].length));
+    }
+
+    /** Distancia al destino que ocupa la posición indicada en la fila del origen. */
+    public double distanciaEnPosicion(int origen, int posicion) {
+        return distancias[origen][posicion];
+    }
+
+    //----------------------------------------------------------------------
+    // CONSTRUCCIÓN DE FILAS
+    //----------------------------------------------------------------------
+    private void construirFila(MotorRutas motor, int origen) {
+        double[] fila = new double[numCiudades];
+        motor.distancias(origen, fila);
+        int[] indices = new int[numCiudades];
+        double[] valores = new double[numCiudades];
+        int total = 0;
+        for (int j = 0; j < numCiudades; j++) {
+            double d = fila[j];
+            if (j != origen && d != INFINITO) {
+                indices[total] = j;
+                valores[total] = d;
+                total++;
+            }
+        }
+        ordenar(indices, valores, 0, total - 1);
+        destinos[origen] = Arrays.copyOf(indices, total);
+        distancias[origen] = Arrays.copyOf(valores, total);
+    }
+
+    // Si una ruta de la fila (anterior o nueva) pasa por una conexión modificada, el
+    // tramo hasta la primera de ellas no cambió: el origen ya llegaba a su extremo inicial
+    private boolean puedeCambiar(int origen, boolean[] modificadas) {
+        if (modificadas[origen]) {
+            return true;
+        }
+        for (int destino : destinos[origen]) {
+            if (modificadas[destino]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // La fila sigue vigente si tiene los mismos destinos alcanzables con las mismas distancias
+    private boolean filaCambio(MotorRutas motor, int origen) {
+        double[] actual = new double[numCiudades];
+        motor.distancias(origen, actual);
+        int[] fila = destinos[origen];
+        for (int p = 0; p < fila.length; p++) {
+            if (actual[fila[p]] != distancias[origen][p]) {
+                return true;
+            }
+        }
+        int alcanzables = 0;
+        for (int j = 0; j < numCiudades; j++) {
+            if (j != origen && actual[j] != INFINITO) {
+                alcanzables++;
+            }
+        }
+        return alcanzables != fila.length;
+    }
+
+    // Quicksort sobre arreglos paralelos por (distancia, índice), sin objetos intermedios
+    private static void ordenar(int[] indices, double[] valores, int desde, int hasta) {
+        while (desde < hasta) {
+            if (hasta - desde < 16) {
+                for (int a = desde + 1; a <= hasta; a++) {
+                    for (int b = a; b > desde && menor(indices, valores, b, b - 1); b--) {
+                        intercambiar(indices, valores, b, b - 1);
+                    }
+                }
+                return;
+            }
+            intercambiar(indices, valores, (desde + hasta) >>> 1, hasta);
+            int frontera = desde;
+            for (int a = desde; a < hasta; a++) {
+                if (menor(indices, valores, a, hasta)) {
+                    intercambiar(indices, valores, a, frontera++);
+                }
+            }
+            intercambiar(indices, valores, frontera, hasta);
+            // Recursión sobre la parte menor para acotar la profundidad de pila
+            if (frontera - desde < hasta - frontera) {
+                ordenar(indices, valores, desde, frontera - 1);
+                desde = frontera + 1;
+            } else {
+                ordenar(indices, valores, frontera + 1, hasta);
+                hasta = frontera - 1;
+            }
+        }
+    }
+
+    private static boolean menor(int[] indices, double[] valores, int a, int b) {
+        return valores[a] < valores[b] || (valores[a] == valores[b] && indices[a] < indices[b]);
+    }
+
+    private static void intercambiar(int[] indices, double[] valores, int a, int b) {
+        int i = indices[a];
+        indices[a] = indices[b];
+        indices[b] = i;
+        double v = valores[a];
+        valores[a] = valores[b];
+        valores[b] = v;
+    }
+}
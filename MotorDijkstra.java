@@ -0,0 +1,209 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Dijkstra desde cada origen sobre listas de adyacencia compactas, con los orígenes
+ * repartidos entre los núcleos disponibles. Para m conexiones cuesta O(n·m·log n),
+ * mucho menos que O(n³) en grafos dispersos. Requiere tiempos no negativos.
+ */
+public class MotorDijkstra extends MotorEnSegundoPlano<MotorDijkstra.Rutas> {
+
+    private static final double INFINITO = Double.MAX_VALUE;
+
+    /** Resultado de un cálculo: distancias y nodo previo desde cada origen. */
+    static class Rutas {
+        final double[][] distancias;
+        final int[][] anterior;                   // anterior[s][v]: nodo previo a v en la ruta desde s
+
+        Rutas(double[][] distancias, int[][] anterior) {
+            this.distancias = distancias;
+            this.anterior = anterior;
+        }
+    }
+
+    @Override
+    public String getNombre() {
+        return "dijkstra";
+    }
+
+    @Override
+    protected Rutas calcularAqui(GrafoFloyd grafo, int tipoClima) {
+        return preparar(grafo, tipoClima).calcular(null);
+    }
+
+    // La adyacencia se copia aquí; el hilo de fondo solo recorre los orígenes
+    @Override
+    protected TareaRecalculo<Rutas> solicitar(GrafoFloyd grafo, int tipoClima, RecalculoFloyd recalculo) {
+        return recalculo.solicitar(grafo, tipoClima, preparar(grafo, tipoClima));
+    }
+
+    /**
+     * Copia las conexiones del clima en listas de adyacencia compactas y devuelve el
+     * cálculo desde todos los orígenes. Este avisa al progreso por cada origen terminado
+     * y lanza CancellationException si este pide detenerse.
+     */
+    static RecalculoFloyd.CalculoPreparado<Rutas> preparar(GrafoFloyd grafo, int tipoClima) {
+        int n = grafo.getNumCiudades();
+
+        // Adyacencia en formato CSR: conexiones de i en [inicio[i], inicio[i+1])
+        int[] inicio = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            int grado = 0;
+            for (int j = 0; j < n; j++) {
+                if (i != j && grafo.getPeso(tipoClima, i, j) != INFINITO) grado++;
+            }
+            inicio[i + 1] = inicio[i] + grado;
+        }
+        int[] destino = new int[inicio[n]];
+        double[] peso = new double[inicio[n]];
+        for (int i = 0, p = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double w = grafo.getPeso(tipoClima, i, j);
+                if (i != j && w != INFINITO) {
+                    destino[p] = j;
+                    peso[p++] = w;
+                }
+            }
+        }
+
+        return progreso -> {
+            double[][] d = new double[n][];
+            int[][] previo = new int[n][];
+            AtomicBoolean detenido = new AtomicBoolean();
+            int[] terminados = {0};
+            IntStream.range(0, n).parallel().forEach(s -> {
+                if (detenido.get()) {
+                    return;
+                }
+                d[s] = new double[n];
+                previo[s] = new int[n];
+                dijkstra(s, inicio, destino, peso, d[s], previo[s]);
+                if (progreso != null) {
+                    // El progreso espera avisos de uno en uno y en orden creciente
+                    synchronized (terminados) {
+                        terminados[0]++;
+                        if (!detenido.get() && !progreso.pivoteCompletado(terminados[0], n)) {
+                            detenido.set(true);
+                        }
+                    }
+                }
+            });
+            if (detenido.get()) {
+                throw new CancellationException("Dijkstra detenido tras " + terminados[0] + " de " + n + " orígenes");
+            }
+            return new Rutas(d, previo);
+        };
+    }
+
+    private static void dijkstra(int origen, int[] inicio, int[] destino, double[] peso,
+                                 double[] d, int[] previo) {
+        int n = d.length;
+        Arrays.fill(d, INFINITO);
+        Arrays.fill(previo, -1);
+        boolean[] cerrado = new boolean[n];
+        MonticuloIndexado monticulo = new MonticuloIndexado(n);
+        d[origen] = 0;
+        monticulo.insertarOReducir(origen, 0);
+
+        while (!monticulo.vacio()) {
+            int u = monticulo.extraerMinimo();
+            cerrado[u] = true;
+            for (int p = inicio[u]; p < inicio[u + 1]; p++) {
+                int v = destino[p];
+                double candidata = d[u] + peso[p];
+                if (!cerrado[v] && candidata < d[v]) {
+                    d[v] = candidata;
+                    previo[v] = u;
+                    monticulo.insertarOReducir(v, candidata);
+                }
+            }
+        }
+    }
+
+    @Override
+    public double distancia(int origen, int destino) {
+        return calculado().distancias[origen][destino];
+    }
+
+    @Override
+    public List<Integer> camino(int origen, int destino) {
+        int[][] anterior = calculado().anterior;
+        if (origen == destino || anterior[origen][destino] == -1) {
+            return null; // Mismo criterio que obtenerCamino: sin tramos no hay camino
+        }
+        LinkedList<Integer> camino = new LinkedList<>();
+        for (int v = destino; v != -1; v = anterior[origen][v]) {
+            camino.addFirst(v);
+        }
+        return camino;
+    }
+
+    /** Montículo binario de mínimos sobre índices 0..n-1 con reducción de prioridad. */
+    private static class MonticuloIndexado {
+        private final int[] nodos;
+        private final int[] posicion;             // -1 si el nodo no está en el montículo
+        private final double[] prioridad;
+        private int tamano;
+
+        MonticuloIndexado(int n) {
+            nodos = new int[n];
+            posicion = new int[n];
+            prioridad = new double[n];
+            Arrays.fill(posicion, -1);
+        }
+
+        boolean vacio() {
+            return tamano == 0;
+        }
+
+        void insertarOReducir(int nodo, double valor) {
+            prioridad[nodo] = valor;
+            if (posicion[nodo] == -1) {
+                nodos[tamano] = nodo;
+                posicion[nodo] = tamano;
+                tamano++;
+            }
+            subir(posicion[nodo]);
+        }
+
+        int extraerMinimo() {
+            int minimo = nodos[0];
+            tamano--;
+            mover(nodos[tamano], 0);
+            posicion[minimo] = -1;
+            if (tamano > 0) bajar(0);
+            return minimo;
+        }
+
+        private void subir(int p) {
+            int nodo = nodos[p];
+            while (p > 0) {
+                int padre = (p - 1) / 2;
+                if (prioridad[nodos[padre]] <= prioridad[nodo]) break;
+                mover(nodos[padre], p);
+                p = padre;
+            }
+            mover(nodo, p);
+        }
+
+        private void bajar(int p) {
+            int nodo = nodos[p];
+            while (true) {
+                int hijo = 2 * p + 1;
+                if (hijo >= tamano) break;
+                if (hijo + 1 < tamano && prioridad[nodos[hijo + 1]] < prioridad[nodos[hijo]]) hijo++;
+                if (prioridad[nodos[hijo]] >= prioridad[nodo]) break;
+                mover(nodos[hijo], p);
+                p = hijo;
+            }
+            mover(nodo, p);
+        }
+
+        private void mover(int nodo, int p) {
+            nodos[p] = nodo;
+            posicion[nodo] = p;
+        }
+    }
+}
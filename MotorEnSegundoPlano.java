@@ -0,0 +1,135 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Base de los motores que saben calcular en el hilo de fondo de RecalculoFloyd. Cada
+ * motor copia en el hilo que modifica el grafo lo que su rutina necesita y la programa;
+ * las consultas posteriores esperan el recálculo pendiente y lo adoptan. Si se canceló
+ * sin reemplazo o falló, el cálculo anterior ya no corresponde al grafo y se recalcula
+ * en el hilo que consulta.
+ *
+ * Varios hilos pueden consultar a la vez; calcular, actualizar e invalidar no deben
+ * coincidir con consultas.
+ */
+public abstract class MotorEnSegundoPlano<R> implements MotorRutas {
+
+    private volatile R resultado;
+    private int climaCalculado;
+    private volatile TareaRecalculo<R> pendiente;          // Recálculo en segundo plano aún no adoptado
+    private GrafoFloyd grafoPendiente;                     // Grafo del recálculo pendiente
+
+    /** Calcula en este hilo con los datos actuales del grafo. */
+    protected abstract R calcularAqui(GrafoFloyd grafo, int tipoClima);
+
+    /**
+     * Copia en este hilo lo que necesita la rutina del motor y la programa en el hilo de
+     * fondo con recalculo.solicitar.
+     */
+    protected abstract TareaRecalculo<R> solicitar(GrafoFloyd grafo, int tipoClima, RecalculoFloyd recalculo);
+
+    /** Libera un resultado que deja de usarse (p. ej. su archivo); por defecto nada. */
+    protected void liberar(R anterior) {
+    }
+
+    @Override
+    public void calcular(GrafoFloyd grafo, int tipoClima) {
+        descartarPendiente();
+        reemplazar(calcularAqui(grafo, tipoClima), tipoClima);
+    }
+
+    /**
+     * Recalcula en el hilo de fondo del servicio con la misma rutina que calcular() y
+     * devuelve la tarea para seguir su avance. Las consultas posteriores esperan a que
+     * termine en lugar de responder con rutas anteriores; una nueva solicitud o mutación
+     * reemplaza a esta.
+     */
+    @Override
+    public TareaRecalculo<R> calcularEnSegundoPlano(GrafoFloyd grafo, int tipoClima, RecalculoFloyd recalculo) {
+        descartarPendiente();
+        grafoPendiente = grafo;
+        pendiente = solicitar(grafo, tipoClima, recalculo);
+        return pendiente;
+    }
+
+    /**
+     * Recálculo en segundo plano que todavía no ha dado resultado (en curso o cancelado
+     * sin reemplazo), o null si no hay ninguno.
+     */
+    @Override
+    public TareaRecalculo<R> getRecalculoPendiente() {
+        TareaRecalculo<R> tarea = pendiente;
+        if (tarea == null || (tarea.isDone() && !tarea.isCompletedExceptionally())) {
+            return null;
+        }
+        return tarea;
+    }
+
+    @Override
+    public void invalidar() {
+        descartarPendiente();
+        reemplazar(null, climaCalculado);
+    }
+
+    /** Resultado vigente, tras adoptar el recálculo pendiente. */
+    protected R calculado() {
+        adoptarPendiente();
+        R actual = resultado;
+        if (actual == null) {
+            throw new IllegalStateException("El motor " + getNombre() + " no tiene un cálculo vigente.");
+        }
+        return actual;
+    }
+
+    /** Resultado vigente si es del clima indicado, tras adoptar el pendiente; si no, null. */
+    protected R calculadoDeClima(int tipoClima) {
+        adoptarPendiente();
+        R actual = resultado;
+        return actual != null && climaCalculado == tipoClima ? actual : null;
+    }
+
+    /** Toma nuevo como cálculo vigente y libera el anterior. */
+    protected void reemplazar(R nuevo, int tipoClima) {
+        R anterior = resultado;
+        resultado = nuevo;
+        climaCalculado = tipoClima;
+        if (anterior != null && anterior != nuevo) {
+            liberar(anterior);
+        }
+    }
+
+    // Espera el recálculo pendiente y lo toma como cálculo vigente. Si se canceló sin
+    // reemplazo o falló, el cálculo anterior ya no corresponde al grafo: se recalcula
+    // aquí mismo y, si eso también falla, se conserva el anterior
+    private void adoptarPendiente() {
+        if (pendiente == null) {
+            return;
+        }
+        synchronized (this) {
+            TareaRecalculo<R> tarea = pendiente;
+            if (tarea == null) {
+                return; // Otro hilo de consulta ya lo adoptó
+            }
+            try {
+                reemplazar(tarea.join(), tarea.getTipoClima());
+            } catch (CancellationException | CompletionException e) {
+                reemplazar(calcularAqui(grafoPendiente, tarea.getTipoClima()), tarea.getTipoClima());
+            } finally {
+                pendiente = null;
+                grafoPendiente = null;
+            }
+        }
+    }
+
+    // Un recálculo que terminó sin que nadie lo adoptara también se libera
+    private void descartarPendiente() {
+        TareaRecalculo<R> tarea = pendiente;
+        if (tarea != null) {
+            pendiente = null;
+            grafoPendiente = null;
+            tarea.cancel(false);
+            if (tarea.isDone() && !tarea.isCompletedExceptionally()) {
+                liberar(tarea.join());
+            }
+        }
+    }
+}
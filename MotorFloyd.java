@@ -0,0 +1,83 @@
+import java.util.*;
+
+/**
+ * Motor de referencia: Floyd-Warshall en memoria sobre un espacio de trabajo
+ * reutilizable. Los demás motores se verifican contra este.
+ *
+ * Varios hilos pueden consultar distancias y caminos a la vez; calcular, actualizar
+ * e invalidar no deben coincidir con consultas.
+ */
+public class MotorFloyd extends MotorEnSegundoPlano<ResultadoFloyd> {
+
+    private final EspacioTrabajoFloyd espacio = new EspacioTrabajoFloyd();
+
+    @Override
+    public String getNombre() {
+        return "floyd";
+    }
+
+    @Override
+    public void actualizar(GrafoFloyd grafo, int tipoClima, CambiosLote cambios) {
+        ResultadoFloyd actual = calculadoDeClima(tipoClima);
+        ResultadoFloyd actualizado = null;
+        if (actual != null) {
+            actualizado = grafo.actualizarFloyd(tipoClima, actual, cambios, espacio);
+        }
+        if (actualizado == null) {
+            calcular(grafo, tipoClima);
+        } else {
+            reemplazar(actualizado, tipoClima);
+        }
+    }
+
+    // Los pesos se copian al solicitar; el espacio de trabajo es el del servicio
+    @Override
+    protected TareaRecalculo<ResultadoFloyd> solicitar(GrafoFloyd grafo, int tipoClima, RecalculoFloyd recalculo) {
+        return recalculo.solicitar(grafo, tipoClima, this::ejecutar);
+    }
+
+    /**
+     * Floyd sobre los pesos dados en el buffer destino, avisando al progreso si no es
+     * null; no publica nada. Las variantes lo sobrescriben; se usa tanto al calcular aquí
+     * como en segundo plano.
+     */
+    protected void ejecutar(double[][] pesos, ResultadoFloyd destino, ProgresoFloyd progreso) {
+        GrafoFloyd.calcularFloyd(pesos, destino, progreso);
+    }
+
+    // Cálculo en este hilo sobre el espacio de trabajo propio
+    @Override
+    protected ResultadoFloyd calcularAqui(GrafoFloyd grafo, int tipoClima) {
+        double[][] pesos = grafo.pesos(tipoClima);
+        ResultadoFloyd destino = espacio.reservar(pesos.length);
+        ejecutar(pesos, destino, null);
+        espacio.publicar(destino);
+        return destino;
+    }
+
+    @Override
+    public double distancia(int origen, int destino) {
+        return calculado().distancias[origen][destino];
+    }
+
+    @Override
+    public List<Integer> camino(int origen, int destino) {
+        int[][] siguiente = calculado().siguiente;
+        if (siguiente[origen][destino] == -1) {
+            return null; // No hay camino
+        }
+        List<Integer> camino = new ArrayList<>();
+        camino.add(origen);
+        int i = origen;
+        while (i != destino) {
+            i = siguiente[i][destino];
+            camino.add(i);
+        }
+        return camino;
+    }
+
+    /** Resultado actual; solo válido hasta el próximo calcular(). */
+    public ResultadoFloyd getResultado() {
+        return calculado();
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Floyd que solo recorre orígenes y destinos alcanzables por cada intermedio;
+ * conviene en grafos dispersos o fragmentados. Usa el mismo espacio de trabajo que
+ * MotorFloyd, sin reservar matrices en cada cálculo, y la misma rutina dispersa al
+ * recalcular en segundo plano.
+ */
+public class MotorFloydDisperso extends MotorFloyd {
+
+    @Override
+    public String getNombre() {
+        return "floyd-disperso";
+    }
+
+    @Override
+    protected void ejecutar(double[][] pesos, ResultadoFloyd destino, ProgresoFloyd progreso) {
+        GrafoFloyd.calcularFloydDisperso(pesos, destino, progreso);
+    }
+}
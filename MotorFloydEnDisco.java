@@ -0,0 +1,136 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Motor fuera de memoria: delega en aplicarFloydEnDisco y consulta el archivo
+ * teselado. Se elige cuando las matrices de resultado no caben en el heap.
+ */
+public class MotorFloydEnDisco extends MotorEnSegundoPlano<ResultadoFloydDisco> {
+
+    private final int tamBloque;
+    private final int bloquesEnMemoria;
+
+    public MotorFloydEnDisco(int tamBloque, int bloquesEnMemoria) {
+        this.tamBloque = tamBloque;
+        this.bloquesEnMemoria = bloquesEnMemoria;
+    }
+
+    @Override
+    public String getNombre() {
+        return "floyd-disco";
+    }
+
+    @Override
+    protected ResultadoFloydDisco calcularAqui(GrafoFloyd grafo, int tipoClima) {
+        File archivo = null;
+        try {
+            archivo = archivoTemporal();
+            return grafo.aplicarFloydEnDisco(tipoClima, archivo, tamBloque, bloquesEnMemoria);
+        } catch (IOException e) {
+            if (archivo != null) archivo.delete();
+            throw new UncheckedIOException("No se pudo calcular Floyd en disco", e);
+        }
+    }
+
+    // Las teselas iniciales se escriben aquí; el hilo de fondo solo ejecuta los pivotes
+    @Override
+    protected TareaRecalculo<ResultadoFloydDisco> solicitar(GrafoFloyd grafo, int tipoClima,
+                                                           RecalculoFloyd recalculo) {
+        File archivo = null;
+        try {
+            archivo = archivoTemporal();
+            FloydEnDisco floyd = grafo.prepararFloydEnDisco(tipoClima, archivo, tamBloque, bloquesEnMemoria);
+            return recalculo.solicitar(grafo, tipoClima, new CalculoEnDisco(floyd, archivo));
+        } catch (IOException e) {
+            if (archivo != null) archivo.delete();
+            throw new UncheckedIOException("No se pudo preparar Floyd en disco", e);
+        }
+    }
+
+    @Override
+    protected void liberar(ResultadoFloydDisco anterior) {
+        try {
+            anterior.close();
+        } catch (IOException e) {
+            // El archivo se descarta de todos modos
+        }
+        anterior.getArchivo().delete();
+    }
+
+    private static File archivoTemporal() throws IOException {
+        File archivo = File.createTempFile("floyd", ".teselas");
+        archivo.deleteOnExit();
+        return archivo;
+    }
+
+    /** Cálculo en disco ya inicializado; si no llega a entregarse borra su archivo. */
+    private static class CalculoEnDisco implements RecalculoFloyd.CalculoPreparado<ResultadoFloydDisco> {
+        private final FloydEnDisco floyd;
+        private final File archivo;
+        private ResultadoFloydDisco resultado;
+
+        CalculoEnDisco(FloydEnDisco floyd, File archivo) {
+            this.floyd = floyd;
+            this.archivo = archivo;
+        }
+
+        @Override
+        public ResultadoFloydDisco calcular(ProgresoFloyd progreso) {
+            try {
+                resultado = floyd.completar(progreso);
+                return resultado;
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo calcular Floyd en disco", e);
+            }
+        }
+
+        @Override
+        public void descartar() {
+            try {
+                floyd.close();
+                if (resultado != null) resultado.close();
+            } catch (IOException e) {
+                // El archivo se descarta de todos modos
+            }
+            archivo.delete();
+        }
+    }
+
+    @Override
+    public double distancia(int origen, int destino) {
+        try {
+            return calculado().distancia(origen, destino);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void distancias(int origen, double[] destino) {
+        try {
+            calculado().leerDistancias(origen, destino);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<Integer> camino(int origen, int destino) {
+        try {
+            ResultadoFloydDisco r = calculado();
+            if (r.siguiente(origen, destino) == -1) {
+                return null; // No hay camino
+            }
+            List<Integer> camino = new ArrayList<>();
+            camino.add(origen);
+            int i = origen;
+            while (i != destino) {
+                i = r.siguiente(i, destino);
+                camino.add(i);
+            }
+            return camino;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
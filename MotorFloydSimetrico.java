@@ -0,0 +1,39 @@
+import java.util.List;
+
+/**
+ * Floyd para grafos no dirigidos (GrafoFloyd con noDirigido): recorre solo el
+ * triángulo superior y guarda el resultado empaquetado, con la mitad de memoria que
+ * MotorFloyd. Requiere un grafo no dirigido.
+ */
+public class MotorFloydSimetrico extends MotorEnSegundoPlano<ResultadoFloydSimetrico> {
+
+    @Override
+    public String getNombre() {
+        return "floyd-simetrico";
+    }
+
+    @Override
+    protected ResultadoFloydSimetrico calcularAqui(GrafoFloyd grafo, int tipoClima) {
+        return grafo.aplicarFloydSimetrico(tipoClima);
+    }
+
+    // El triángulo se copia aquí; el hilo de fondo lo convierte en el de distancias
+    @Override
+    protected TareaRecalculo<ResultadoFloydSimetrico> solicitar(GrafoFloyd grafo, int tipoClima,
+                                                               RecalculoFloyd recalculo) {
+        int n = grafo.getNumCiudades();
+        double[] distancias = grafo.copiarTriangulo(tipoClima);
+        return recalculo.solicitar(grafo, tipoClima,
+                progreso -> GrafoFloyd.calcularFloydSimetrico(n, distancias, progreso));
+    }
+
+    @Override
+    public double distancia(int origen, int destino) {
+        return calculado().distancia(origen, destino);
+    }
+
+    @Override
+    public List<Integer> camino(int origen, int destino) {
+        return calculado().camino(origen, destino);
+    }
+}
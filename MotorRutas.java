@@ -0,0 +1,59 @@
+import java.util.List;
+
+/**
+ * Motor de rutas más cortas entre todos los pares de ciudades.
+ * MotorFloyd es la implementación de referencia; SelectorMotor elige la más adecuada
+ * según la forma del grafo y los recursos disponibles.
+ */
+public interface MotorRutas {
+
+    /** Nombre corto para informes y mensajes. */
+    String getNombre();
+
+    /** Calcula las rutas del grafo con el clima indicado; reemplaza el cálculo anterior. */
+    void calcular(GrafoFloyd grafo, int tipoClima);
+
+    /** Distancia mínima de origen a destino (Double.MAX_VALUE si no hay ruta). */
+    double distancia(int origen, int destino);
+
+    /**
+     * Copia en destino las distancias de origen a todas las ciudades. Por defecto una
+     * consulta por ciudad; los motores que leen de disco lo hacen por tramos.
+     */
+    default void distancias(int origen, double[] destino) {
+        for (int j = 0; j < destino.length; j++) {
+            destino[j] = distancia(origen, j);
+        }
+    }
+
+    /** Índices de la ruta de origen a destino, ambos incluidos, o null si no hay ruta. */
+    List<Integer> camino(int origen, int destino);
+
+    /** Descarta el cálculo actual, p. ej. tras modificar el grafo. */
+    void invalidar();
+
+    /**
+     * Pone al día las rutas tras confirmar un lote de mutaciones en el grafo. Por defecto
+     * recalcula todo si el lote afecta al clima; los motores que saben actualizar de
+     * forma incremental lo sobrescriben.
+     */
+    default void actualizar(GrafoFloyd grafo, int tipoClima, CambiosLote cambios) {
+        if (cambios.afectaClima(tipoClima)) {
+            calcular(grafo, tipoClima);
+        }
+    }
+
+    /**
+     * Programa el cálculo completo en el hilo de fondo de recalculo, con la rutina propia
+     * del motor, y devuelve la tarea; las consultas posteriores la esperan. Devuelve null
+     * sin calcular nada si el motor no sabe calcular en segundo plano.
+     */
+    default TareaRecalculo<?> calcularEnSegundoPlano(GrafoFloyd grafo, int tipoClima, RecalculoFloyd recalculo) {
+        return null;
+    }
+
+    /** Recálculo en segundo plano que todavía no ha dado resultado, o null si no hay ninguno. */
+    default TareaRecalculo<?> getRecalculoPendiente() {
+        return null;
+    }
+}
@@ -1,4 +1,8 @@
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.io.*;
 
 public class ProgramaPrincipal {
@@ -6,24 +10,47 @@ public class ProgramaPrincipal {
     // ATRIBUTOS ESTÁTICOS DE LA CLASE PRINCIPAL
     //----------------------------------------------------------------------
     private static Scanner scanner = new Scanner(System.in);           
-    private static GrafoFloyd grafo = new GrafoFloyd();              
-    private static ResultadoFloyd resultado;              
+    private static GrafoFloyd grafo;                                   // Dirigido salvo con --no-dirigido
+    private static MotorRutas motor;                                   // Motor del clima activo
+    private static int climaActivo = 0;                                // Clima de las rutas vigentes
+    private static MotorRutas[] motores = new MotorRutas[4];           // Rutas por clima, bajo demanda
+    private static IndiceAlcance[] indices = new IndiceAlcance[4];     // Índices de alcance por clima
+    private static boolean[] indicesObsoletos = new boolean[4];        // Pendientes de un recálculo en curso
+    private static RecalculoFloyd recalculo = new RecalculoFloyd();    // Recálculos en segundo plano
+    private static CacheRutas cacheRutas = new CacheRutas(1024, 8);    // Rutas ya resueltas
+    private static BitacoraMutaciones bitacora;
 
     public static void main(String[] args) {
+        // Con --no-dirigido cada línea de guategrafo.txt es una carretera de doble vía;
+        // cada modo tiene su propia instantánea y bitácora
+        boolean noDirigido = Arrays.asList(args).contains("--no-dirigido");
+        String prefijo = noDirigido ? "guategrafo.nodirigido" : "guategrafo";
+        grafo = new GrafoFloyd(noDirigido);
+        bitacora = new BitacoraMutaciones(grafo, new File(prefijo + ".base.txt"),
+                new File(prefijo + ".bitacora"), 500);
+
         try {
             System.out.println("=== Sistema de Optimización Logística ===");
+            if (noDirigido) {
+                System.out.println("Modo no dirigido: cada conexión vale en ambos sentidos.");
+            }
             System.out.println("Cargando grafo desde archivo guategrafo.txt...");
             
-            // Cargar datos del archivo y aplicar algoritmo inicial
-            grafo.cargarDesdeArchivo("guategrafo.txt");
+            // Cargar la instantánea base y reaplicar las mutaciones registradas
+            int reaplicadas = bitacora.recuperar("guategrafo.txt");
             System.out.println("Grafo cargado exitosamente.");
+            if (reaplicadas > 0) {
+                System.out.println("Mutaciones recuperadas de la bitácora: " + reaplicadas);
+            }
             
             // Aplicar algoritmo de Floyd con clima normal por defecto
-            resultado = grafo.aplicarFloyd(0); // 0 = clima normal
+            motor = motorDeClima(0); // 0 = clima normal
+            System.out.println("Motor de rutas: " + motor.getNombre());
             
             // Mostrar información inicial
             grafo.mostrarMatriz(0);
-            String centro = grafo.calcularCentro(resultado.distancias);
+            esperarRecalculo(motor);
+            String centro = grafo.calcularCentro(motor);
             System.out.println("\nCentro del grafo: " + centro);
             
             // Iniciar bucle principal del menú
@@ -43,7 +70,13 @@ public class ProgramaPrincipal {
                         modificarGrafo();
                         break;
                     case 4:
+                        consultarAlcance();
+                        break;
+                    case 5:
                         continuar = false;
+                        bitacora.close();
+                        recalculo.close();
+                        System.out.println(cacheRutas);
                         System.out.println("¡Gracias por usar el sistema!");
                         break;
                     default:
@@ -62,13 +95,67 @@ public class ProgramaPrincipal {
     //----------------------------------------------------------------------
     private static void mostrarMenu() {
         System.out.println("\n=== MENÚ PRINCIPAL ===");
+        for (MotorRutas motorClima : motores) {
+            TareaRecalculo<?> tarea = motorClima == null ? null : motorClima.getRecalculoPendiente();
+            if (tarea != null) {
+                System.out.println("(" + tarea + ")");
+            }
+        }
         System.out.println("1. Consultar ruta más corta entre ciudades");
         System.out.println("2. Mostrar centro del grafo");
         System.out.println("3. Modificar grafo");
-        System.out.println("4. Salir");
+        System.out.println("4. Consultar ciudades alcanzables o más cercanas");
+        System.out.println("5. Salir");
         System.out.print("Seleccione una opción: ");
     }
     
+    //----------------------------------------------------------------------
+    // MÉTODOS PARA OBTENER RUTAS E ÍNDICES POR CLIMA
+    //----------------------------------------------------------------------
+    private static MotorRutas motorDeClima(int tipoClima) {
+        if (motores[tipoClima] == null) {
+            MotorRutas nuevo = SelectorMotor.seleccionar(grafo, tipoClima);
+            // Si el motor sabe calcular en segundo plano no bloquea el menú; las consultas
+            // esperan mostrando el avance
+            if (nuevo.calcularEnSegundoPlano(grafo, tipoClima, recalculo) == null) {
+                nuevo.calcular(grafo, tipoClima);
+            }
+            motores[tipoClima] = nuevo;
+        }
+        return motores[tipoClima];
+    }
+    
+    private static IndiceAlcance indiceDeClima(int tipoClima) {
+        MotorRutas motorClima = motorDeClima(tipoClima);
+        esperarRecalculo(motorClima);
+        if (indices[tipoClima] == null) {
+            indices[tipoClima] = IndiceAlcance.construir(motorClima, grafo.getNumCiudades());
+        } else if (indicesObsoletos[tipoClima]) {
+            indices[tipoClima].actualizar(motorClima);
+        }
+        indicesObsoletos[tipoClima] = false;
+        return indices[tipoClima];
+    }
+    
+    //----------------------------------------------------------------------
+    // MÉTODOS PARA SEGUIR LOS RECÁLCULOS EN SEGUNDO PLANO
+    //----------------------------------------------------------------------
+    
+    // Espera a que termine el recálculo del motor mostrando el avance cada segundo
+    private static void esperarRecalculo(MotorRutas motorClima) {
+        TareaRecalculo<?> tarea = motorClima.getRecalculoPendiente();
+        while (tarea != null && !tarea.isDone()) {
+            System.out.println(tarea);
+            try {
+                tarea.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                // Sigue calculando: se vuelve a mostrar el avance
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                break;
+            }
+        }
+    }
+    
     //----------------------------------------------------------------------
     // MÉTODO PARA LEER LA OPCIÓN DEL USUARIO
     //----------------------------------------------------------------------
@@ -89,43 +176,107 @@ public class ProgramaPrincipal {
         System.out.print("Ingrese ciudad destino: ");
         String destino = scanner.nextLine();
 
-        // Obtener el camino usando la matriz de rutas
-        List<String> camino = grafo.obtenerCamino(origen, destino, resultado.siguiente);
-        
-        if (camino == null) {
-            System.out.println("No existe ruta entre " + origen + " y " + destino);
+        // Solo se guardan pares de ciudades existentes: un nombre mal escrito no ocupa la
+        // caché ni desaloja rutas populares
+        if (grafo.getIndice(origen) == -1 || grafo.getIndice(destino) == -1) {
+            System.out.println("Una o ambas ciudades no existen en el grafo.");
             return;
         }
 
-        // Calcular y mostrar la distancia total
-        int indiceOrigen = grafo.getCiudades().indexOf(origen);
-        int indiceDestino = grafo.getCiudades().indexOf(destino);
+        // Las rutas populares se sirven desde la caché mientras el grafo no cambie
+        RutaCalculada ruta = cacheRutas.obtener(origen, destino, climaActivo, grafo.getVersion(),
+                () -> resolverRuta(origen, destino));
+        System.out.println(ruta.texto);
+    }
+    
+    //----------------------------------------------------------------------
+    // MÉTODO PARA RESOLVER Y FORMATEAR UNA RUTA (se guarda en la caché)
+    //----------------------------------------------------------------------
+    private static RutaCalculada resolverRuta(String origen, String destino) {
+        long version = grafo.getVersion();
+        esperarRecalculo(motor);
         
-        if (indiceOrigen == -1 || indiceDestino == -1) {
-            System.out.println("Una o ambas ciudades no existen.");
-            return;
+        // Obtener el camino usando la matriz de rutas
+        List<String> camino = grafo.obtenerCamino(origen, destino, motor);
+        
+        if (camino == null) {
+            return new RutaCalculada(origen, destino, climaActivo, Double.MAX_VALUE, null,
+                    "No existe ruta entre " + origen + " y " + destino, version);
         }
 
-        double distancia = resultado.distancias[indiceOrigen][indiceDestino];
+        // Calcular la distancia total
+        int indiceOrigen = grafo.getIndice(origen);
+        int indiceDestino = grafo.getIndice(destino);
+        double distancia = motor.distancia(indiceOrigen, indiceDestino);
         
-        // Mostrar resultado completo
-        System.out.println("\nRuta más corta de " + origen + " a " + destino + ":");
-        System.out.println("Distancia total: " + distancia + " horas");
-        System.out.print("Camino: ");
-        for (int i = 0; i < camino.size(); i++) {
-            System.out.print(camino.get(i));
-            if (i < camino.size() - 1) {
-                System.out.print(" -> ");
+        // Formatear resultado completo
+        StringBuilder texto = new StringBuilder();
+        texto.append("\nRuta más corta de ").append(origen).append(" a ").append(destino).append(":\n");
+        texto.append("Distancia total: ").append(distancia).append(" horas\n");
+        texto.append("Camino: ").append(String.join(" -> ", camino));
+        return new RutaCalculada(origen, destino, climaActivo, distancia, camino, texto.toString(), version);
+    }
+    
+    //----------------------------------------------------------------------
+    // MÉTODO PARA CONSULTAR CIUDADES ALCANZABLES O MÁS CERCANAS
+    //----------------------------------------------------------------------
+    private static void consultarAlcance() {
+        try {
+            System.out.print("Clima (0 - Normal, 1 - Lluvia, 2 - Nieve, 3 - Tormenta): ");
+            int tipoClima = Integer.parseInt(scanner.nextLine());
+            if (tipoClima < 0 || tipoClima > 3) {
+                System.out.println("Tipo de clima no válido.");
+                return;
             }
+            System.out.print("Ciudad origen: ");
+            String origen = scanner.nextLine();
+            int indiceOrigen = grafo.getIndice(origen);
+            if (indiceOrigen == -1) {
+                System.out.println("La ciudad no existe.");
+                return;
+            }
+            System.out.println("1. Ciudades alcanzables en un tiempo máximo");
+            System.out.println("2. Ciudades más cercanas");
+            System.out.print("Seleccione una opción: ");
+            int opcion = leerOpcion();
+            
+            IndiceAlcance indice = indiceDeClima(tipoClima);
+            int[] destinos;
+            if (opcion == 1) {
+                System.out.print("Tiempo máximo (horas): ");
+                destinos = indice.alcanzables(indiceOrigen, Double.parseDouble(scanner.nextLine()));
+            } else if (opcion == 2) {
+                System.out.print("Cantidad de ciudades: ");
+                int cantidad = Integer.parseInt(scanner.nextLine());
+                if (cantidad < 0) {
+                    System.out.println("La cantidad de ciudades no puede ser negativa.");
+                    return;
+                }
+                destinos = indice.masCercanas(indiceOrigen, cantidad);
+            } else {
+                System.out.println("Opción no válida.");
+                return;
+            }
+            
+            List<String> ciudades = grafo.getCiudades();
+            if (destinos.length == 0) {
+                System.out.println("No hay ciudades que cumplan la condición.");
+            }
+            for (int p = 0; p < destinos.length; p++) {
+                System.out.println("  " + ciudades.get(destinos[p]) + ": "
+                        + indice.distanciaEnPosicion(indiceOrigen, p) + " horas");
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Ingrese un número válido.");
         }
-        System.out.println();
     }
     
     //----------------------------------------------------------------------
     // MÉTODO PARA MOSTRAR EL CENTRO DEL GRAFO
     //----------------------------------------------------------------------
     private static void mostrarCentroGrafo() {
-        String centro = grafo.calcularCentro(resultado.distancias);
+        esperarRecalculo(motor);
+        String centro = grafo.calcularCentro(motor);
         System.out.println("\nEl centro del grafo es: " + centro);
     }
     
@@ -137,48 +288,132 @@ public class ProgramaPrincipal {
         System.out.println("1. Interrumpir tráfico entre ciudades");
         System.out.println("2. Establecer nueva conexión");
         System.out.println("3. Cambiar condición climática");
+        System.out.println("4. Interrumpir tráfico en varias conexiones");
         System.out.print("Seleccione una opción: ");
         
         int opcion = leerOpcion();
         
-        switch (opcion) {
-            case 1:
-                interrumpirTrafico();
-                break;
-            case 2:
-                establecerConexion();
-                break;
-            case 3:
-                cambiarClima();
-                break;
-            default:
-                System.out.println("Opción no válida.");
+        if (opcion == 3) {
+            cambiarClima();
+        } else if (opcion == 1 || opcion == 2 || opcion == 4) {
+            // Las mutaciones se agrupan en un lote: se escriben en la bitácora con un solo
+            // fsync, se aplican y las rutas se actualizan una sola vez
+            String confirmacion;
+            CambiosLote cambios;
+            bitacora.iniciarLote();
+            try {
+                if (opcion == 1) {
+                    confirmacion = interrumpirTrafico();
+                } else if (opcion == 2) {
+                    confirmacion = establecerConexion();
+                } else {
+                    confirmacion = interrumpirVariasConexiones();
+                }
+            } catch (IOException e) {
+                bitacora.descartarLote();
+                System.out.println("Error al registrar las mutaciones: " + e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                bitacora.descartarLote();
+                throw e;
+            }
+            try {
+                cambios = bitacora.confirmarLote();
+            } catch (IOException e) {
+                System.out.println("Error al registrar las mutaciones, no se aplicaron: " + e.getMessage());
                 return;
+            }
+            if (confirmacion != null) {
+                System.out.println(confirmacion);
+            }
+            for (int clima = 0; clima < motores.length && cambios.getNumCambios() > 0; clima++) {
+                actualizarRutas(clima, cambios);
+            }
+        } else {
+            System.out.println("Opción no válida.");
+            return;
         }
         
-        // Recalcular rutas y centro después de modificaciones
-        resultado = grafo.aplicarFloyd(0);
-        String nuevoCentro = grafo.calcularCentro(resultado.distancias);
+        // Mostrar el centro con las rutas vigentes (se conserva el clima activo)
+        if (motor.getRecalculoPendiente() != null) {
+            System.out.println("El nuevo centro estará disponible al terminar el recálculo (opción 2).");
+            return;
+        }
+        String nuevoCentro = grafo.calcularCentro(motor);
         System.out.println("Nuevo centro del grafo: " + nuevoCentro);
     }
     
+    //----------------------------------------------------------------------
+    // MÉTODO PARA ACTUALIZAR LAS RUTAS DE UN CLIMA TRAS UN LOTE
+    //----------------------------------------------------------------------
+    private static void actualizarRutas(int clima, CambiosLote cambios) {
+        MotorRutas motorClima = motores[clima];
+        if (motorClima == null) {
+            return;
+        }
+        // Un recálculo en curso quedó obsoleto con este lote y se reemplaza aunque el
+        // lote no afecte al clima
+        boolean enCurso = motorClima.getRecalculoPendiente() != null;
+        if (!enCurso && !cambios.afectaClima(clima)) {
+            return;
+        }
+        if (enCurso || !cambios.soloReducciones(clima)) {
+            // Hay que recalcular todo: se hace en segundo plano sin bloquear el menú si el
+            // motor lo permite
+            TareaRecalculo<?> tarea = motorClima.calcularEnSegundoPlano(grafo, clima, recalculo);
+            if (tarea != null) {
+                System.out.println(tarea);
+                indicesObsoletos[clima] = true;
+                return;
+            }
+        }
+        // Una actualización por clima, y solo las filas del índice que el lote puede afectar
+        motorClima.actualizar(grafo, clima, cambios);
+        if (indices[clima] != null) {
+            indices[clima].actualizar(motorClima, cambios, clima);
+        }
+    }
+    
     //----------------------------------------------------------------------
     // MÉTODO PARA INTERRUMPIR TRÁFICO ENTRE CIUDADES
     //----------------------------------------------------------------------
-    private static void interrumpirTrafico() {
+    private static String interrumpirTrafico() throws IOException {
         System.out.print("Ciudad 1: ");
         String ciudad1 = scanner.nextLine();
         System.out.print("Ciudad 2: ");
         String ciudad2 = scanner.nextLine();
         
-        grafo.eliminarConexion(ciudad1, ciudad2);
-        System.out.println("Conexión eliminada entre " + ciudad1 + " y " + ciudad2);
+        // Se informa después de confirmar el lote, cuando la mutación ya está en disco
+        if (bitacora.eliminarConexion(ciudad1, ciudad2)) {
+            return "Conexión eliminada entre " + ciudad1 + " y " + ciudad2;
+        }
+        return null;
+    }
+    
+    //----------------------------------------------------------------------
+    // MÉTODO PARA INTERRUMPIR TRÁFICO EN VARIAS CONEXIONES
+    //----------------------------------------------------------------------
+    private static String interrumpirVariasConexiones() throws IOException {
+        System.out.println("Ingrese un par de ciudades por línea (Ciudad1 Ciudad2); línea vacía para terminar:");
+        int eliminadas = 0;
+        String linea;
+        while (!(linea = scanner.nextLine().trim()).isEmpty()) {
+            String[] partes = linea.split("\\s+");
+            if (partes.length != 2) {
+                System.out.println("Formato no válido: " + linea);
+                continue;
+            }
+            if (bitacora.eliminarConexion(partes[0], partes[1])) {
+                eliminadas++;
+            }
+        }
+        return "Conexiones interrumpidas: " + eliminadas;
     }
     
     //----------------------------------------------------------------------
     // MÉTODO PARA ESTABLECER NUEVA CONEXIÓN
     //----------------------------------------------------------------------
-    private static void establecerConexion() {
+    private static String establecerConexion() throws IOException {
         System.out.print("Ciudad origen: ");
         String ciudad1 = scanner.nextLine();
         System.out.print("Ciudad destino: ");
@@ -194,12 +429,14 @@ public class ProgramaPrincipal {
             System.out.print("Tiempo con tormenta: ");
             double tormenta = Double.parseDouble(scanner.nextLine());
             
-            grafo.agregarConexion(ciudad1, ciudad2, normal, lluvia, nieve, tormenta);
-            System.out.println("Nueva conexión establecida.");
+            if (bitacora.agregarConexion(ciudad1, ciudad2, normal, lluvia, nieve, tormenta)) {
+                return "Nueva conexión establecida.";
+            }
             
         } catch (NumberFormatException e) {
             System.out.println("Error: Ingrese valores numéricos válidos.");
         }
+        return null;
     }
     
     //----------------------------------------------------------------------
@@ -213,7 +450,8 @@ public class ProgramaPrincipal {
         try {
             int tipoClima = Integer.parseInt(scanner.nextLine());
             if (tipoClima >= 0 && tipoClima <= 3) {
-                resultado = grafo.aplicarFloyd(tipoClima);
+                motor = motorDeClima(tipoClima);
+                climaActivo = tipoClima;
                 grafo.mostrarMatriz(tipoClima);
                 String[] nombres = {"Normal", "Lluvia", "Nieve", "Tormenta"};
                 System.out.println("Algoritmo aplicado con clima: " + nombres[tipoClima]);
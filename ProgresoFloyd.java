@@ -0,0 +1,15 @@
+/**
+ * Recibe el avance de un cálculo de Floyd pivote a pivote y puede detenerlo.
+ */
+@FunctionalInterface
+public interface ProgresoFloyd {
+
+    /**
+     * Se llama al terminar cada nodo intermedio k.
+     *
+     * @param pivotes pivotes completados (k + 1)
+     * @param total   número de ciudades
+     * @return false para detener el cálculo
+     */
+    boolean pivoteCompletado(int pivotes, int total);
+}
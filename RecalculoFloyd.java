@@ -0,0 +1,137 @@
+import java.io.Closeable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Recalcula rutas en un hilo de fondo para no bloquear a quien consulta o modifica el
+ * grafo. Cada solicitud trae la rutina de cálculo del motor que la hace, con la copia de
+ * los datos del grafo tomada en el hilo que la hace, y devuelve una TareaRecalculo
+ * cancelable. Una nueva solicitud para el mismo clima reemplaza a la que esté en curso,
+ * y cualquier mutación del grafo (cambio de versión) detiene la tarea en el siguiente
+ * pivote, de modo que nunca se termina un cálculo ya obsoleto.
+ */
+public class RecalculoFloyd implements Closeable {
+
+    /**
+     * Rutina de Floyd sobre pesos copiados que escribe en un buffer ya reservado sin
+     * publicarlo, p. ej. GrafoFloyd::calcularFloyd.
+     */
+    @FunctionalInterface
+    public interface Calculo {
+        void calcular(double[][] pesos, ResultadoFloyd destino, ProgresoFloyd progreso);
+    }
+
+    /**
+     * Cálculo que un motor ya preparó con su propia copia de los datos del grafo (pesos,
+     * triángulo, adyacencia o teselas iniciales). Corre en el hilo de fondo avisando al
+     * progreso y lanza CancellationException si este pide detenerse.
+     */
+    @FunctionalInterface
+    public interface CalculoPreparado<R> {
+        R calcular(ProgresoFloyd progreso);
+
+        /** Libera lo preparado (y el resultado, si lo hubo) cuando no se llega a entregar. */
+        default void descartar() {
+        }
+    }
+
+    private final ExecutorService ejecutor;
+    private final EspacioTrabajoFloyd[] espacios = new EspacioTrabajoFloyd[4];   // Solo los usa el hilo de fondo
+    private final TareaRecalculo<?>[] enCurso = new TareaRecalculo<?>[4];
+
+    public RecalculoFloyd() {
+        this.ejecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "floyd-recalculo");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        for (int clima = 0; clima < espacios.length; clima++) {
+            espacios[clima] = new EspacioTrabajoFloyd();
+        }
+    }
+
+    /**
+     * Programa el recálculo del clima con los pesos actuales del grafo y cancela el que
+     * estuviera en curso para ese clima. Debe llamarse desde el hilo que modifica el grafo.
+     */
+    public synchronized TareaRecalculo<ResultadoFloyd> solicitar(GrafoFloyd grafo, int tipoClima, Calculo calculo) {
+        double[][] pesos = grafo.copiarPesos(tipoClima);
+        EspacioTrabajoFloyd espacio = espacios[tipoClima];
+        // Solo se publica si la tarea se completó con este resultado: una cancelación
+        // justo después del último pivote lo descarta, y publicarlo haría que el
+        // siguiente cálculo sobrescribiera el buffer que los motores siguen usando
+        return programar(grafo, tipoClima, progreso -> {
+            ResultadoFloyd destino = espacio.reservar(pesos.length);
+            calculo.calcular(pesos, destino, progreso);
+            return destino;
+        }, espacio::publicar);
+    }
+
+    /**
+     * Como solicitar(grafo, tipoClima, calculo) para un cálculo que el motor ya preparó
+     * en este hilo; los motores que no usan matrices de pesos n x n lo usan.
+     */
+    public synchronized <R> TareaRecalculo<R> solicitar(GrafoFloyd grafo, int tipoClima, CalculoPreparado<R> calculo) {
+        return programar(grafo, tipoClima, calculo, resultado -> { });
+    }
+
+    private <R> TareaRecalculo<R> programar(GrafoFloyd grafo, int tipoClima, CalculoPreparado<R> calculo,
+                                            Consumer<R> alCompletar) {
+        TareaRecalculo<?> anterior = enCurso[tipoClima];
+        if (anterior != null) {
+            anterior.superar();
+        }
+        TareaRecalculo<R> tarea = new TareaRecalculo<>(tipoClima, grafo.getVersion());
+        int numCiudades = grafo.getNumCiudades();
+        enCurso[tipoClima] = tarea;
+        ejecutor.execute(() -> ejecutar(grafo, numCiudades, calculo, alCompletar, tarea));
+        return tarea;
+    }
+
+    /** Tarea más reciente del clima (en curso o ya terminada), o null si no hubo ninguna. */
+    public synchronized TareaRecalculo<?> getTarea(int tipoClima) {
+        return enCurso[tipoClima];
+    }
+
+    private <R> void ejecutar(GrafoFloyd grafo, int numCiudades, CalculoPreparado<R> calculo,
+                              Consumer<R> alCompletar, TareaRecalculo<R> tarea) {
+        if (tarea.isDone()) {
+            calculo.descartar();
+            return; // Reemplazada antes de empezar
+        }
+        tarea.iniciar(numCiudades);
+        try {
+            R resultado = calculo.calcular((pivotes, total) -> {
+                tarea.avanzar(pivotes);
+                if (grafo.getVersion() != tarea.getVersion()) {
+                    tarea.superar();
+                }
+                return !tarea.isDone();
+            });
+            if (tarea.complete(resultado)) {
+                alCompletar.accept(resultado);
+            } else {
+                calculo.descartar();
+            }
+        } catch (CancellationException e) {
+            // La tarea ya quedó cancelada; el resultado publicado anterior sigue intacto
+            calculo.descartar();
+        } catch (RuntimeException | OutOfMemoryError e) {
+            calculo.descartar();
+            tarea.completeExceptionally(e);
+        }
+    }
+
+    /** Cancela las tareas pendientes y detiene el hilo de fondo. */
+    @Override
+    public synchronized void close() {
+        for (TareaRecalculo<?> tarea : enCurso) {
+            if (tarea != null) {
+                tarea.cancel(false);
+            }
+        }
+        ejecutor.shutdown();
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reproduce una TrazaCarga contra GrafoFloyd desde varios hilos a una tasa fija y mide
+ * la latencia de extremo a extremo de cada operación.
+ *
+ * La operación i está prevista para inicio + i / tasa y su latencia se mide desde ese
+ * instante, no desde que un hilo quedó libre para enviarla. Si el sistema se atasca
+ * (p. ej. esperando un recálculo), las operaciones que debieron enviarse durante el
+ * atasco también cuentan la espera y los percentiles no esconden la pausa (corrección
+ * de la omisión coordinada). El tiempo de servicio sin corregir se informa aparte.
+ *
+ * Las operaciones se sirven como en ProgramaPrincipal: las consultas pasan por la caché
+ * de rutas y el motor del clima activo; cada mutación es un lote que se aplica con un
+ * candado de escritura, y las que alargan rutas lanzan un recálculo en segundo plano
+ * que las consultas posteriores esperan (atascos por recálculo).
+ *
+ * Uso: java ReproductorCarga [grafo|ciudades] [operaciones] [operacionesPorSegundo] [hilos] [traza]
+ *   grafo: archivo con el formato de guategrafo.txt, o número de ciudades de un grafo aleatorio
+ *   traza: si el archivo existe se reproduce; si no, se genera y se graba en él
+ */
+public class ReproductorCarga {
+
+    private final GrafoFloyd grafo;
+    private final MotorRutas[] motores = new MotorRutas[4];
+    private final CacheRutas cacheRutas = new CacheRutas(4096, 16);
+    private final RecalculoFloyd recalculo = new RecalculoFloyd();
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private volatile int climaActivo;
+
+    // Métricas
+    private final HistogramaLatencias latencia = new HistogramaLatencias();         // Desde el envío previsto
+    private final HistogramaLatencias servicio = new HistogramaLatencias();         // Desde el envío real
+    private final Map<TrazaCarga.Tipo, HistogramaLatencias> latenciaPorTipo = new EnumMap<>(TrazaCarga.Tipo.class);
+    private final HistogramaLatencias atascos = new HistogramaLatencias();          // Esperas por recálculo
+    private final HistogramaLatencias sincronas = new HistogramaLatencias();        // Actualizaciones con candado
+    private final Queue<TareaRecalculo<?>> recalculos = new ConcurrentLinkedQueue<>();
+    private final LongAdder errores = new LongAdder();
+
+    /** Informe de una reproducción. */
+    public static class Informe {
+        public final int operaciones;
+        public final int hilos;
+        public final double tasaObjetivo;
+        public final long nanosTotales;
+        public final HistogramaLatencias latencia;
+        public final HistogramaLatencias servicio;
+        public final Map<TrazaCarga.Tipo, HistogramaLatencias> latenciaPorTipo;
+        public final HistogramaLatencias atascos;
+        public final HistogramaLatencias sincronas;
+        public final int recalculosLanzados;
+        public final int recalculosReemplazados;
+        public final long errores;
+        public final String cache;
+
+        Informe(ReproductorCarga reproductor, int operaciones, int hilos, double tasaObjetivo, long nanosTotales) {
+            this.operaciones = operaciones;
+            this.hilos = hilos;
+            this.tasaObjetivo = tasaObjetivo;
+            this.nanosTotales = nanosTotales;
+            this.latencia = reproductor.latencia;
+            this.servicio = reproductor.servicio;
+            this.latenciaPorTipo = Collections.unmodifiableMap(reproductor.latenciaPorTipo);
+            this.atascos = reproductor.atascos;
+            this.sincronas = reproductor.sincronas;
+            this.recalculosLanzados = reproductor.recalculos.size();
+            int reemplazados = 0;
+            for (TareaRecalculo<?> tarea : reproductor.recalculos) {
+                if (tarea.isSuperada()) reemplazados++;
+            }
+            this.recalculosReemplazados = reemplazados;
+            this.errores = reproductor.errores.sum();
+            this.cache = reproductor.cacheRutas.toString();
+        }
+
+        /** Operaciones completadas por segundo. */
+        public double getRendimiento() {
+            return nanosTotales == 0 ? 0 : operaciones / (nanosTotales / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder texto = new StringBuilder();
+            texto.append(String.format("Operaciones: %d en %.2f s (%.1f op/s, objetivo %.1f op/s), hilos: %d, errores: %d%n",
+                    operaciones, nanosTotales / 1e9, getRendimiento(), tasaObjetivo, hilos, errores));
+            texto.append("Latencia corregida, desde el envío previsto (ms):\n");
+            texto.append(String.format("  %-10s %9s %9s %9s %9s %9s%n", "tipo", "cantidad", "p50", "p99", "p999", "máx"));
+            texto.append(filaLatencia("total", latencia));
+            for (Map.Entry<TrazaCarga.Tipo, HistogramaLatencias> entrada : latenciaPorTipo.entrySet()) {
+                texto.append(filaLatencia(entrada.getKey().name().toLowerCase(), entrada.getValue()));
+            }
+            texto.append("Tiempo de servicio sin corregir (ms):\n");
+            texto.append(filaLatencia("total", servicio));
+            texto.append(String.format("Atascos por recálculo: %d consultas esperaron, %.1f ms en total, p99 %.3f ms, máx %.3f ms%n",
+                    atascos.getTotal(), atascos.getMedia() * atascos.getTotal() / 1e6,
+                    atascos.percentil(99) / 1e6, atascos.getMaximo() / 1e6));
+            texto.append(String.format("Actualizaciones síncronas (bloquean las consultas): %d, p99 %.3f ms, máx %.3f ms%n",
+                    sincronas.getTotal(), sincronas.percentil(99) / 1e6, sincronas.getMaximo() / 1e6));
+            texto.append(String.format("Recálculos en segundo plano: %d lanzados, %d reemplazados antes de terminar%n",
+                    recalculosLanzados, recalculosReemplazados));
+            texto.append(cache);
+            return texto.toString();
+        }
+
+        private static String filaLatencia(String nombre, HistogramaLatencias h) {
+            return String.format("  %-10s %9d %9.3f %9.3f %9.3f %9.3f%n", nombre, h.getTotal(),
+                    h.percentil(50) / 1e6, h.percentil(99) / 1e6, h.percentil(99.9) / 1e6, h.getMaximo() / 1e6);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String origenGrafo = args.length > 0 ? args[0] : "guategrafo.txt";
+        int numOperaciones = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        double tasa = args.length > 2 ? Double.parseDouble(args[2]) : 2_000;
+        int hilos = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        String archivoTraza = args.length > 4 ? args[4] : null;
+
+        GrafoFloyd grafo = new GrafoFloyd();
+        if (origenGrafo.matches("\\d+")) {
+            int ciudades = Integer.parseInt(origenGrafo);
+            grafo.cargarDesdeArchivo(GrafoAleatorio.crearArchivo(ciudades, ciudades * 4).getPath());
+        } else {
+            grafo.cargarDesdeArchivo(origenGrafo);
+        }
+
+        TrazaCarga traza;
+        if (archivoTraza != null && new File(archivoTraza).exists()) {
+            traza = TrazaCarga.cargar(archivoTraza);
+            System.out.println("Traza grabada: " + archivoTraza);
+        } else {
+            traza = TrazaCarga.generar(grafo, numOperaciones, 1);
+            if (archivoTraza != null) {
+                traza.guardar(archivoTraza);
+                System.out.println("Traza generada y grabada en " + archivoTraza);
+            }
+        }
+        System.out.println("Ciudades: " + grafo.getNumCiudades() + ", operaciones: " + traza.getOperaciones().size());
+
+        System.out.println(reproducir(grafo, traza, tasa, hilos));
+    }
+
+    /**
+     * Calcula las rutas de los cuatro climas y reproduce la traza a la tasa indicada,
+     * repartiendo las operaciones en orden entre los hilos. El grafo queda modificado
+     * por las mutaciones de la traza.
+     */
+    public static Informe reproducir(GrafoFloyd grafo, TrazaCarga traza, double operacionesPorSegundo,
+                                     int hilos) throws InterruptedException {
+        if (operacionesPorSegundo <= 0 || hilos <= 0) {
+            throw new IllegalArgumentException("La tasa y el número de hilos deben ser positivos.");
+        }
+        ReproductorCarga reproductor = new ReproductorCarga(grafo);
+        try {
+            return reproductor.ejecutar(traza.getOperaciones(), operacionesPorSegundo, hilos);
+        } finally {
+            reproductor.recalculo.close();
+        }
+    }
+
+    private ReproductorCarga(GrafoFloyd grafo) {
+        this.grafo = grafo;
+        for (int clima = 0; clima < motores.length; clima++) {
+            MotorRutas motor = SelectorMotor.seleccionar(grafo, clima);
+            if (motor instanceof MotorFloydEnDisco) {
+                motor = new MotorFloyd(); // Las consultas concurrentes necesitan un motor en memoria
+            }
+            motor.calcular(grafo, clima);
+            motores[clima] = motor;
+        }
+        for (TrazaCarga.Tipo tipo : TrazaCarga.Tipo.values()) {
+            latenciaPorTipo.put(tipo, new HistogramaLatencias());
+        }
+    }
+
+    private Informe ejecutar(List<TrazaCarga.Operacion> operaciones, double operacionesPorSegundo, int numHilos)
+            throws InterruptedException {
+        double intervalo = 1e9 / operacionesPorSegundo;
+        long inicio = System.nanoTime() + 10_000_000L;   // Margen para arrancar los hilos
+
+        Thread[] hilos = new Thread[numHilos];
+        for (int h = 0; h < numHilos; h++) {
+            int primera = h;
+            hilos[h] = new Thread(() -> {
+                // Cada hilo envía las operaciones h, h + hilos, h + 2·hilos, ... en su instante previsto
+                for (int i = primera; i < operaciones.size(); i += numHilos) {
+                    long previsto = inicio + (long) (i * intervalo);
+                    long espera;
+                    while ((espera = previsto - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(espera);
+                    }
+                    long enviado = System.nanoTime();
+                    TrazaCarga.Operacion operacion = operaciones.get(i);
+                    try {
+                        aplicar(operacion);
+                    } catch (RuntimeException e) {
+                        errores.increment();
+                    }
+                    long fin = System.nanoTime();
+                    latencia.registrar(fin - previsto);
+                    servicio.registrar(fin - enviado);
+                    latenciaPorTipo.get(operacion.tipo).registrar(fin - previsto);
+                }
+            }, "reproductor-" + h);
+            hilos[h].start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        return new Informe(this, operaciones.size(), numHilos, operacionesPorSegundo,
+                Math.max(0, System.nanoTime() - inicio));
+    }
+
+    //----------------------------------------------------------------------
+    // OPERACIONES
+    //----------------------------------------------------------------------
+    private void aplicar(TrazaCarga.Operacion operacion) {
+        switch (operacion.tipo) {
+            case RUTA:
+                consultarRuta(operacion.ciudad1, operacion.ciudad2);
+                break;
+            case CLIMA:
+                climaActivo = operacion.clima;
+                break;
+            default:
+                mutar(operacion);
+        }
+    }
+
+    private RutaCalculada consultarRuta(String origen, String destino) {
+        int clima = climaActivo;
+        MotorRutas motor = motores[clima];
+        while (true) {
+            esperarRecalculo(motor);
+            candado.readLock().lock();
+            // Si una mutación lanzó otro recálculo entre la espera y el candado, se vuelve a esperar
+            TareaRecalculo<?> tarea = motor.getRecalculoPendiente();
+            if (tarea == null || tarea.isDone()) {
+                break;
+            }
+            candado.readLock().unlock();
+        }
+        try {
+            long version = grafo.getVersion();
+            int indiceOrigen = grafo.getIndice(origen);
+            int indiceDestino = grafo.getIndice(destino);
+            if (indiceOrigen == -1 || indiceDestino == -1) {
+                // Como en ProgramaPrincipal, los nombres desconocidos no pasan por la caché
+                return new RutaCalculada(origen, destino, clima, Double.MAX_VALUE, null,
+                        "Una o ambas ciudades no existen en el grafo.", version);
+            }
+            return cacheRutas.obtener(origen, destino, clima, version, () -> {
+                List<String> camino = grafo.obtenerCamino(origen, destino, motor);
+                if (camino == null) {
+                    return new RutaCalculada(origen, destino, clima, Double.MAX_VALUE, null,
+                            "No existe ruta entre " + origen + " y " + destino, version);
+                }
+                double distancia = motor.distancia(indiceOrigen, indiceDestino);
+                return new RutaCalculada(origen, destino, clima, distancia, camino,
+                        String.join(" -> ", camino), version);
+            });
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    private void mutar(TrazaCarga.Operacion operacion) {
+        candado.writeLock().lock();
+        try {
+            grafo.iniciarLote();
+            try {
+                if (operacion.tipo == TrazaCarga.Tipo.CIERRE) {
+                    grafo.eliminarConexion(operacion.ciudad1, operacion.ciudad2);
+                } else {
+                    double[] t = operacion.tiempos;
+                    grafo.agregarConexion(operacion.ciudad1, operacion.ciudad2, t[0], t[1], t[2], t[3]);
+                }
+            } finally {
+                CambiosLote cambios = grafo.confirmarLote();
+                for (int clima = 0; clima < motores.length && cambios.getNumCambios() > 0; clima++) {
+                    actualizarRutas(clima, cambios);
+                }
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    // Misma política que ProgramaPrincipal: recálculo completo en segundo plano si alguna
+    // ruta puede empeorar o hay uno en curso, actualización incremental en otro caso
+    private void actualizarRutas(int clima, CambiosLote cambios) {
+        MotorRutas motor = motores[clima];
+        boolean enCurso = motor.getRecalculoPendiente() != null;
+        if (!enCurso && !cambios.afectaClima(clima)) {
+            return;
+        }
+        if (enCurso || !cambios.soloReducciones(clima)) {
+            TareaRecalculo<?> tarea = motor.calcularEnSegundoPlano(grafo, clima, recalculo);
+            if (tarea != null) {
+                recalculos.add(tarea);
+                return;
+            }
+        }
+        long inicio = System.nanoTime();
+        motor.actualizar(grafo, clima, cambios);
+        sincronas.registrar(System.nanoTime() - inicio);
+    }
+
+
+    // Espera sin candados a que termine el recálculo del motor y registra cuánto duró el atasco
+    private void esperarRecalculo(MotorRutas motor) {
+        TareaRecalculo<?> tarea = motor.getRecalculoPendiente();
+        if (tarea == null || tarea.isDone()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        try {
+            tarea.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // Reemplazado o fallido: la consulta sigue con el recálculo vigente
+        }
+        atascos.registrar(System.nanoTime() - inicio);
+    }
+}
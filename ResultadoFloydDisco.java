@@ -0,0 +1,111 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Resultado de FloydEnDisco: consulta distancias y rutas directamente sobre el
+ * archivo teselado sin cargar las matrices en memoria.
+ */
+public class ResultadoFloydDisco implements Closeable {
+
+    private final File archivo;
+    private final FileChannel canal;
+    private final int n;
+    private final int tamBloque;
+    private final int numBloques;
+    private final long bytesPorTesela;
+    private final ByteBuffer celda = ByteBuffer.allocate(Double.BYTES);
+
+    public ResultadoFloydDisco(File archivo) throws IOException {
+        this.archivo = archivo;
+        canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ);
+        ByteBuffer cabecera = ByteBuffer.allocate(FloydEnDisco.TAM_CABECERA);
+        while (cabecera.hasRemaining()) {
+            if (canal.read(cabecera, cabecera.position()) < 0) {
+                canal.close();
+                throw new EOFException("Archivo de resultados incompleto");
+            }
+        }
+        cabecera.flip();
+        if (cabecera.getInt() != FloydEnDisco.MAGIA) {
+            canal.close();
+            throw new IOException("El archivo no contiene un resultado de FloydEnDisco");
+        }
+        n = cabecera.getInt();
+        tamBloque = cabecera.getInt();
+        numBloques = Math.max(1, (n + tamBloque - 1) / tamBloque);
+        bytesPorTesela = (long) tamBloque * tamBloque * (Double.BYTES + Integer.BYTES);
+    }
+
+    public File getArchivo() {
+        return archivo;
+    }
+
+    public int getNumCiudades() {
+        return n;
+    }
+
+    public synchronized double distancia(int i, int j) throws IOException {
+        leerCelda(posicionCelda(i, j, false), Double.BYTES);
+        return celda.getDouble(0);
+    }
+
+    public synchronized int siguiente(int i, int j) throws IOException {
+        leerCelda(posicionCelda(i, j, true), Integer.BYTES);
+        return celda.getInt(0);
+    }
+
+    /**
+     * Copia en destino las distancias de la ciudad i a todas las demás, con una lectura
+     * por tesela de la fila en lugar de una por celda. Puede llamarse desde varios hilos.
+     */
+    public void leerDistancias(int i, double[] destino) throws IOException {
+        if (i < 0 || i >= n) {
+            throw new IndexOutOfBoundsException("Índice fuera del grafo: " + i);
+        }
+        ByteBuffer tramo = ByteBuffer.allocate(tamBloque * Double.BYTES);
+        long inicioFila = (long) (i % tamBloque) * tamBloque * Double.BYTES;
+        for (int bj = 0; bj < numBloques; bj++) {
+            long posicion = FloydEnDisco.TAM_CABECERA
+                    + ((long) (i / tamBloque) * numBloques + bj) * bytesPorTesela + inicioFila;
+            tramo.clear();
+            while (tramo.hasRemaining()) {
+                if (canal.read(tramo, posicion + tramo.position()) < 0) {
+                    throw new EOFException("Archivo de resultados incompleto");
+                }
+            }
+            // La última tesela puede traer relleno más allá de n
+            int primera = bj * tamBloque;
+            tramo.flip();
+            tramo.asDoubleBuffer().get(destino, primera, Math.min(tamBloque, n - primera));
+        }
+    }
+
+    private long posicionCelda(int i, int j, boolean siguiente) {
+        if (i < 0 || j < 0 || i >= n || j >= n) {
+            throw new IndexOutOfBoundsException("Índice fuera del grafo: " + i + ", " + j);
+        }
+        int local = (i % tamBloque) * tamBloque + (j % tamBloque);
+        long tesela = FloydEnDisco.TAM_CABECERA
+                + ((long) (i / tamBloque) * numBloques + (j / tamBloque)) * bytesPorTesela;
+        if (siguiente) {
+            return tesela + (long) tamBloque * tamBloque * Double.BYTES + (long) local * Integer.BYTES;
+        }
+        return tesela + (long) local * Double.BYTES;
+    }
+
+    private void leerCelda(long posicion, int bytes) throws IOException {
+        celda.clear().limit(bytes);
+        while (celda.hasRemaining()) {
+            if (canal.read(celda, posicion + celda.position()) < 0) {
+                throw new EOFException("Archivo de resultados incompleto");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
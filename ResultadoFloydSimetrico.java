@@ -0,0 +1,56 @@
+import java.util.*;
+
+/**
+ * Resultado de GrafoFloyd.aplicarFloydSimetrico: distancias e intermedios guardados
+ * como triángulos superiores empaquetados; se consultan en cualquier sentido.
+ */
+public class ResultadoFloydSimetrico {
+
+    private static final double INFINITO = Double.MAX_VALUE;
+
+    private final int n;
+    private final double[] distancias;           // Distancias mínimas, d[i][j] == d[j][i]
+    private final int[] intermedio;              // Nodo intermedio de la ruta, -1 si es directa
+
+    public ResultadoFloydSimetrico(int n, double[] distancias, int[] intermedio) {
+        this.n = n;
+        this.distancias = distancias;
+        this.intermedio = intermedio;
+    }
+
+    public double distancia(int i, int j) {
+        return distancias[GrafoFloyd.indiceTriangulo(n, i, j)];
+    }
+
+    public int intermedio(int i, int j) {
+        return intermedio[GrafoFloyd.indiceTriangulo(n, i, j)];
+    }
+
+    /** Índices de la ruta de i a j, ambos incluidos, o null si no hay ruta. */
+    public List<Integer> camino(int i, int j) {
+        if (i == j || distancia(i, j) == INFINITO) {
+            return null; // No hay camino
+        }
+
+        // Expandir los tramos (a, b) por su intermedio hasta llegar a conexiones directas
+        List<Integer> camino = new ArrayList<>();
+        camino.add(i);
+        Deque<int[]> tramos = new ArrayDeque<>();
+        tramos.push(new int[]{i, j});
+        while (!tramos.isEmpty()) {
+            int[] tramo = tramos.pop();
+            int k = intermedio(tramo[0], tramo[1]);
+            if (k == -1) {
+                camino.add(tramo[1]);
+            } else {
+                tramos.push(new int[]{k, tramo[1]});
+                tramos.push(new int[]{tramo[0], k});
+            }
+        }
+        return camino;
+    }
+
+    public int getNumCiudades() {
+        return n;
+    }
+}
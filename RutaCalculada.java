@@ -0,0 +1,27 @@
+import java.util.*;
+
+/**
+ * Ruta ya resuelta y formateada, tal como la guarda CacheRutas. Si no hay ruta,
+ * camino es null y texto contiene el mensaje correspondiente.
+ */
+public class RutaCalculada {
+
+    public final String origen;
+    public final String destino;
+    public final int tipoClima;
+    public final double distancia;
+    public final List<String> camino;             // Ciudades de la ruta (inmutable) o null
+    public final String texto;                    // Resultado listo para mostrar
+    final long version;                           // Versión del grafo con la que se calculó
+
+    public RutaCalculada(String origen, String destino, int tipoClima, double distancia,
+                         List<String> camino, String texto, long version) {
+        this.origen = origen;
+        this.destino = destino;
+        this.tipoClima = tipoClima;
+        this.distancia = distancia;
+        this.camino = camino == null ? null : Collections.unmodifiableList(new ArrayList<>(camino));
+        this.texto = texto;
+        this.version = version;
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.*;
+
+/**
+ * Elige un MotorRutas según el número de ciudades, la densidad de conexiones,
+ * la memoria disponible y los núcleos del equipo.
+ */
+public class SelectorMotor {
+
+    private static final int CIUDADES_PEQUENAS = 64;        // Por debajo, Floyd directo
+    private static final double FRACCION_HEAP = 0.6;        // Margen para el resto del programa
+    private static final long BYTES_POR_PAR = Double.BYTES + Integer.BYTES;
+
+    private SelectorMotor() {
+    }
+
+    /** Motor para el grafo con el clima dado, usando los recursos de esta JVM. */
+    public static MotorRutas seleccionar(GrafoFloyd grafo, int tipoClima) {
+        int n = grafo.getNumCiudades();
+        double densidad = n < 2 ? 0 : grafo.contarConexiones(tipoClima) / ((double) n * (n - 1));
+        Runtime runtime = Runtime.getRuntime();
+        long disponible = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        // En modo no dirigido basta el triángulo superior del resultado
+        if (grafo.esNoDirigido() && (long) n * (n + 1) / 2 * BYTES_POR_PAR <= disponible * FRACCION_HEAP) {
+            return new MotorFloydSimetrico();
+        }
+        return seleccionar(n, densidad, disponible, runtime.availableProcessors());
+    }
+
+    /**
+     * Reglas de selección:
+     * - si las matrices de resultado no caben en el heap disponible, Floyd en disco;
+     * - grafos pequeños, Floyd de referencia;
+     * - grafos muy dispersos (m·log n por origen < n² de Floyd), Dijkstra desde cada
+     *   origen, que además aprovecha varios núcleos;
+     * - dispersión moderada, Floyd disperso; en otro caso, Floyd de referencia.
+     */
+    public static MotorRutas seleccionar(int n, double densidad, long memoriaDisponible, int nucleos) {
+        long bytesResultado = (long) n * n * BYTES_POR_PAR;
+        if (bytesResultado > memoriaDisponible * FRACCION_HEAP) {
+            return new MotorFloydEnDisco(256, 16);
+        }
+        if (n < CIUDADES_PEQUENAS) {
+            return new MotorFloyd();
+        }
+        double log2n = Math.log(n) / Math.log(2);
+        // Con más núcleos Dijkstra compensa también en grafos algo más densos
+        if (densidad * log2n < 0.25 * Math.max(1, nucleos)) {
+            return new MotorDijkstra();
+        }
+        if (densidad < 0.25) {
+            return new MotorFloydDisperso();
+        }
+        return new MotorFloyd();
+    }
+
+    /** Todos los motores en memoria o en disco, para pruebas diferenciales. */
+    public static List<MotorRutas> motoresDisponibles() {
+        return motoresDisponibles(false);
+    }
+
+    /**
+     * Como motoresDisponibles(), más los que solo admiten grafos no dirigidos
+     * (MotorFloydSimetrico) si noDirigido.
+     */
+    public static List<MotorRutas> motoresDisponibles(boolean noDirigido) {
+        List<MotorRutas> motores = new ArrayList<>(Arrays.asList(new MotorFloyd(), new MotorFloydDisperso(),
+                new MotorDijkstra(), new MotorFloydEnDisco(8, 4)));
+        if (noDirigido) {
+            motores.add(new MotorFloydSimetrico());
+        }
+        return motores;
+    }
+}
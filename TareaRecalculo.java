@@ -0,0 +1,99 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recálculo en segundo plano solicitado a RecalculoFloyd. Se completa con el resultado
+ * del motor que lo pidió (R), o queda cancelado si alguien lo cancela o si una mutación
+ * posterior del grafo lo deja obsoleto. Mientras corre informa su avance en pivotes (u
+ * orígenes, en Dijkstra) y una estimación del tiempo restante: cada paso cuesta lo mismo.
+ */
+public class TareaRecalculo<R> extends CompletableFuture<R> {
+
+    private final int tipoClima;
+    private final long version;                   // Versión del grafo de los pesos copiados
+    private volatile int pivotes;                 // Pivotes completados
+    private volatile int total = -1;              // -1 hasta que empieza a calcular
+    private volatile long inicioNanos;
+    private volatile boolean superada;            // Cancelada por una mutación posterior
+
+    TareaRecalculo(int tipoClima, long version) {
+        this.tipoClima = tipoClima;
+        this.version = version;
+    }
+
+    public int getTipoClima() {
+        return tipoClima;
+    }
+
+    /** Versión del grafo con la que se calcula; el resultado corresponde a ella. */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getPivotes() {
+        return pivotes;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /** Fracción completada, de 0 a 1. */
+    public double getProgreso() {
+        int n = total;
+        if (n <= 0) {
+            return isDone() && n == 0 ? 1 : 0;
+        }
+        return (double) pivotes / n;
+    }
+
+    /** Estimación del tiempo restante en nanosegundos, o -1 si aún no hay datos. */
+    public long getRestanteNanos() {
+        int hechos = pivotes;
+        int n = total;
+        if (hechos == 0 || n <= 0) {
+            return -1;
+        }
+        long transcurrido = System.nanoTime() - inicioNanos;
+        return (long) ((double) transcurrido / hechos * (n - hechos));
+    }
+
+    /** true si se canceló porque el grafo cambió antes de terminar. */
+    public boolean isSuperada() {
+        return superada;
+    }
+
+    void iniciar(int numCiudades) {
+        inicioNanos = System.nanoTime();
+        total = numCiudades;
+    }
+
+    void avanzar(int completados) {
+        pivotes = completados;
+    }
+
+    void superar() {
+        if (cancel(false)) {
+            superada = true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String[] nombres = {"Normal", "Lluvia", "Nieve", "Tormenta"};
+        String estado;
+        if (isCancelled()) {
+            estado = superada ? "reemplazado por un cambio posterior" : "cancelado";
+        } else if (isDone()) {
+            estado = isCompletedExceptionally() ? "fallido" : "terminado";
+        } else if (total < 0) {
+            estado = "en espera";
+        } else {
+            long restante = getRestanteNanos();
+            estado = String.format("%d/%d pivotes (%.1f%%), faltan %s", pivotes, total,
+                    getProgreso() * 100,
+                    restante < 0 ? "?" : "~" + TimeUnit.NANOSECONDS.toSeconds(restante + 999_999_999L) + " s");
+        }
+        return "Recálculo clima " + nombres[tipoClima] + ": " + estado;
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * Proceso trabajador del Floyd-Warshall distribuido.
+ * Guarda los bloques de filas que le asigna CoordinadorFloyd y, en cada ronda,
+ * calcula el bloque pivote o actualiza sus filas con el bloque pivote recibido.
+ * El estado vive solo durante la sesión: si el proceso se reinicia, el coordinador
+ * vuelve a enviarle sus bloques.
+ *
+ * Uso: java TrabajadorFloyd puerto
+ */
+public class TrabajadorFloyd implements Runnable, Closeable {
+
+    // Comandos del protocolo (compartidos con CoordinadorFloyd)
+    static final int CMD_INICIAR = 1;
+    static final int CMD_PIVOTE = 2;
+    static final int CMD_ACTUALIZAR = 3;
+    static final int CMD_RECOGER = 4;
+    static final int CMD_FIN = 5;
+
+    private static final double INFINITO = Double.MAX_VALUE;
+
+    private final ServerSocket servidor;
+    private volatile boolean activo = true;
+
+    // Estado de la sesión actual
+    private int n;
+    private int tamBloque;
+    private Map<Integer, double[][]> distancias;  // bloque -> filas de distancias
+    private Map<Integer, int[][]> siguiente;      // bloque -> filas de rutas
+
+    public TrabajadorFloyd(int puerto) throws IOException {
+        servidor = new ServerSocket();
+        servidor.setReuseAddress(true);
+        servidor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto));
+    }
+
+    public int getPuerto() {
+        return servidor.getLocalPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Uso: java TrabajadorFloyd puerto");
+            return;
+        }
+        try (TrabajadorFloyd trabajador = new TrabajadorFloyd(Integer.parseInt(args[0]))) {
+            System.out.println("Trabajador escuchando en el puerto " + trabajador.getPuerto());
+            trabajador.run();
+        }
+    }
+
+    /** Atiende sesiones del coordinador una tras otra hasta que se cierra el trabajador. */
+    @Override
+    public void run() {
+        while (activo) {
+            try (Socket socket = servidor.accept()) {
+                socket.setTcpNoDelay(true);
+                atender(socket);
+            } catch (IOException e) {
+                // Sesión interrumpida: se descarta el estado y se espera otra conexión
+            }
+        }
+    }
+
+    private void atender(Socket socket) throws IOException {
+        distancias = new HashMap<>();
+        siguiente = new HashMap<>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        while (true) {
+            int comando = in.readInt();
+            switch (comando) {
+                case CMD_INICIAR: {
+                    n = in.readInt();
+                    tamBloque = in.readInt();
+                    int cantidad = in.readInt();
+                    for (int b = 0; b < cantidad; b++) {
+                        int bloque = in.readInt();
+                        int filas = filasDeBloque(bloque);
+                        double[][] d = new double[filas][n];
+                        int[][] s = new int[filas][n];
+                        leerFilas(in, d, s);
+                        distancias.put(bloque, d);
+                        siguiente.put(bloque, s);
+                    }
+                    out.writeInt(CMD_INICIAR);
+                    break;
+                }
+                case CMD_PIVOTE: {
+                    int kb = in.readInt();
+                    long inicio = System.nanoTime();
+                    calcularPivote(kb);
+                    actualizar(kb, distancias.get(kb));
+                    out.writeLong(System.nanoTime() - inicio);
+                    escribirFilas(out, distancias.get(kb), siguiente.get(kb));
+                    break;
+                }
+                case CMD_ACTUALIZAR: {
+                    int kb = in.readInt();
+                    double[][] dPivote = new double[filasDeBloque(kb)][n];
+                    int[][] sPivote = new int[filasDeBloque(kb)][n];
+                    leerFilas(in, dPivote, sPivote);
+                    long inicio = System.nanoTime();
+                    if (distancias.containsKey(kb)) {
+                        // Solo ocurre al resincronizar: el bloque pivote ya es definitivo
+                        distancias.put(kb, dPivote);
+                        siguiente.put(kb, sPivote);
+                    }
+                    actualizar(kb, dPivote);
+                    out.writeLong(System.nanoTime() - inicio);
+                    break;
+                }
+                case CMD_RECOGER: {
+                    out.writeInt(distancias.size());
+                    for (int bloque : distancias.keySet()) {
+                        out.writeInt(bloque);
+                        escribirFilas(out, distancias.get(bloque), siguiente.get(bloque));
+                    }
+                    break;
+                }
+                case CMD_FIN:
+                    return;
+                default:
+                    throw new IOException("Comando desconocido: " + comando);
+            }
+            out.flush();
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // CÁLCULO LOCAL
+    //----------------------------------------------------------------------
+
+    // Fases 1 y 2 (fila): Floyd con intermedios del bloque kb sobre sus propias filas
+    private void calcularPivote(int kb) {
+        double[][] d = distancias.get(kb);
+        int[][] s = siguiente.get(kb);
+        int base = kb * tamBloque;
+        for (int k = 0; k < d.length; k++) {
+            double[] filaK = d[k];
+            for (int i = 0; i < d.length; i++) {
+                double dik = d[i][base + k];
+                if (dik == INFINITO) continue;
+                relajar(d[i], s[i], dik, s[i][base + k], filaK);
+            }
+        }
+    }
+
+    // Fases 2 (columna) y 3: actualiza las demás filas propias con el bloque pivote ya calculado
+    private void actualizar(int kb, double[][] pivote) {
+        int base = kb * tamBloque;
+        for (int bloque : distancias.keySet()) {
+            if (bloque == kb) continue;
+            double[][] d = distancias.get(bloque);
+            int[][] s = siguiente.get(bloque);
+            for (int i = 0; i < d.length; i++) {
+                for (int k = 0; k < pivote.length; k++) {
+                    double dik = d[i][base + k];
+                    if (dik == INFINITO) continue;
+                    relajar(d[i], s[i], dik, s[i][base + k], pivote[k]);
+                }
+            }
+        }
+    }
+
+    private static void relajar(double[] filaI, int[] rutaI, double dik, int sik, double[] filaK) {
+        for (int j = 0; j < filaI.length; j++) {
+            double dkj = filaK[j];
+            if (dkj != INFINITO && dik + dkj < filaI[j]) {
+                filaI[j] = dik + dkj;
+                rutaI[j] = sik;
+            }
+        }
+    }
+
+    private int filasDeBloque(int bloque) {
+        return Math.min(tamBloque, n - bloque * tamBloque);
+    }
+
+    //----------------------------------------------------------------------
+    // SERIALIZACIÓN DE FILAS (compartida con CoordinadorFloyd)
+    //----------------------------------------------------------------------
+    static void escribirFilas(DataOutputStream out, double[][] d, int[][] s) throws IOException {
+        for (double[] fila : d) {
+            for (double valor : fila) out.writeDouble(valor);
+        }
+        for (int[] fila : s) {
+            for (int valor : fila) out.writeInt(valor);
+        }
+    }
+
+    static void leerFilas(DataInputStream in, double[][] d, int[][] s) throws IOException {
+        for (double[] fila : d) {
+            for (int j = 0; j < fila.length; j++) fila[j] = in.readDouble();
+        }
+        for (int[] fila : s) {
+            for (int j = 0; j < fila.length; j++) fila[j] = in.readInt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        activo = false;
+        servidor.close();
+    }
+}
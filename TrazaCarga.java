@@ -0,0 +1,191 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Secuencia de operaciones para ReproductorCarga: consultas de rutas, cierres,
+ * conexiones nuevas y cambios de clima. Se genera con una mezcla parecida a la de
+ * producción o se carga de un archivo grabado, una operación por línea:
+ *
+ *   ruta Mixco Antigua
+ *   cierre Mixco VillaNueva
+ *   conexion Mixco VillaNueva 0.4 0.6 0.8 1.5
+ *   clima 2
+ *
+ * Las líneas vacías y las que empiezan con # se ignoran.
+ */
+public class TrazaCarga {
+
+    public enum Tipo { RUTA, CIERRE, CONEXION, CLIMA }
+
+    /** Una operación de la traza; los campos que no aplican al tipo quedan en null o -1. */
+    public static class Operacion {
+        public final Tipo tipo;
+        public final String ciudad1;
+        public final String ciudad2;
+        public final double[] tiempos;            // Tiempos por clima de CONEXION
+        public final int clima;                   // Clima de CLIMA
+
+        Operacion(Tipo tipo, String ciudad1, String ciudad2, double[] tiempos, int clima) {
+            this.tipo = tipo;
+            this.ciudad1 = ciudad1;
+            this.ciudad2 = ciudad2;
+            this.tiempos = tiempos;
+            this.clima = clima;
+        }
+
+        @Override
+        public String toString() {
+            switch (tipo) {
+                case RUTA:
+                    return "ruta " + ciudad1 + " " + ciudad2;
+                case CIERRE:
+                    return "cierre " + ciudad1 + " " + ciudad2;
+                case CONEXION:
+                    return "conexion " + ciudad1 + " " + ciudad2 + " " + tiempos[0] + " " + tiempos[1]
+                            + " " + tiempos[2] + " " + tiempos[3];
+                default:
+                    return "clima " + clima;
+            }
+        }
+    }
+
+    // Mezcla por defecto, en porcentaje de operaciones
+    private static final int PORCENTAJE_CIERRES = 4;
+    private static final int PORCENTAJE_CONEXIONES = 4;
+    private static final int PORCENTAJE_CLIMA = 2;
+
+    private final List<Operacion> operaciones;
+
+    private TrazaCarga(List<Operacion> operaciones) {
+        this.operaciones = Collections.unmodifiableList(operaciones);
+    }
+
+    /**
+     * Genera una traza sobre el grafo: 90 % consultas de rutas, sesgadas hacia unas
+     * pocas ciudades populares para que la caché tenga el mismo papel que en producción,
+     * 4 % cierres de conexiones existentes, 4 % conexiones (reabre una cerrada si la hay)
+     * y 2 % cambios de clima.
+     */
+    public static TrazaCarga generar(GrafoFloyd grafo, int numOperaciones, long semilla) {
+        Random random = new Random(semilla);
+        List<String> ciudades = grafo.getCiudades();
+        int n = ciudades.size();
+        List<Operacion> operaciones = new ArrayList<>(numOperaciones);
+        Deque<Operacion> cerradas = new ArrayDeque<>();   // Conexiones cerradas, con sus tiempos
+
+        for (int o = 0; o < numOperaciones; o++) {
+            int dado = random.nextInt(100);
+            if (dado < PORCENTAJE_CLIMA) {
+                operaciones.add(new Operacion(Tipo.CLIMA, null, null, null, random.nextInt(4)));
+            } else if (dado < PORCENTAJE_CLIMA + PORCENTAJE_CONEXIONES) {
+                Operacion conexion = cerradas.pollFirst();
+                if (conexion == null) {
+                    int i = random.nextInt(n);
+                    int j = (i + 1 + random.nextInt(n - 1)) % n;   // Distinta de i
+                    double t = 1 + random.nextInt(50);
+                    conexion = new Operacion(Tipo.CONEXION, ciudades.get(i), ciudades.get(j),
+                            new double[]{t, t * 1.5, t * 2, t * 3}, -1);
+                }
+                operaciones.add(conexion);
+            } else if (dado < PORCENTAJE_CLIMA + PORCENTAJE_CONEXIONES + PORCENTAJE_CIERRES) {
+                Operacion cierre = cerrarConexionExistente(grafo, ciudades, random, cerradas);
+                if (cierre != null) {
+                    operaciones.add(cierre);
+                }
+            } else {
+                operaciones.add(new Operacion(Tipo.RUTA, ciudades.get(ciudadPopular(random, n)),
+                        ciudades.get(ciudadPopular(random, n)), null, -1));
+            }
+        }
+        return new TrazaCarga(operaciones);
+    }
+
+    // Elige una conexión del grafo original que no esté ya cerrada y recuerda sus tiempos
+    private static Operacion cerrarConexionExistente(GrafoFloyd grafo, List<String> ciudades, Random random,
+                                                     Deque<Operacion> cerradas) {
+        int n = ciudades.size();
+        for (int intento = 0; intento < 20; intento++) {
+            int i = random.nextInt(n);
+            int desplazamiento = random.nextInt(n);
+            // Primera conexión abierta de i a partir de una columna al azar
+            for (int p = 0; p < n; p++) {
+                int j = (desplazamiento + p) % n;
+                if (i == j || grafo.getPeso(0, i, j) == Double.MAX_VALUE) continue;
+                String ciudad1 = ciudades.get(i);
+                String ciudad2 = ciudades.get(j);
+                boolean yaCerrada = cerradas.stream()
+                        .anyMatch(c -> c.ciudad1.equals(ciudad1) && c.ciudad2.equals(ciudad2));
+                if (yaCerrada) continue;
+                double[] tiempos = new double[4];
+                for (int clima = 0; clima < 4; clima++) {
+                    tiempos[clima] = grafo.getPeso(clima, i, j);
+                }
+                cerradas.addLast(new Operacion(Tipo.CONEXION, ciudad1, ciudad2, tiempos, -1));
+                return new Operacion(Tipo.CIERRE, ciudad1, ciudad2, null, -1);
+            }
+        }
+        return null;
+    }
+
+    // Distribución sesgada: la ciudad 0 es la más consultada y la última, la que menos
+    private static int ciudadPopular(Random random, int n) {
+        return (int) (n * Math.pow(random.nextDouble(), 3));
+    }
+
+    /** Carga una traza grabada. */
+    public static TrazaCarga cargar(String nombreArchivo) throws IOException {
+        List<Operacion> operaciones = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(nombreArchivo))) {
+            String linea;
+            int numeroLinea = 0;
+            while ((linea = br.readLine()) != null) {
+                numeroLinea++;
+                linea = linea.trim();
+                if (linea.isEmpty() || linea.startsWith("#")) continue;
+                String[] partes = linea.split("\\s+");
+                try {
+                    operaciones.add(leerOperacion(partes));
+                } catch (RuntimeException e) {
+                    throw new IOException("Línea " + numeroLinea + " no válida en " + nombreArchivo + ": " + linea);
+                }
+            }
+        }
+        return new TrazaCarga(operaciones);
+    }
+
+    private static Operacion leerOperacion(String[] partes) {
+        switch (partes[0]) {
+            case "ruta":
+                return new Operacion(Tipo.RUTA, partes[1], partes[2], null, -1);
+            case "cierre":
+                return new Operacion(Tipo.CIERRE, partes[1], partes[2], null, -1);
+            case "conexion":
+                double[] tiempos = new double[4];
+                for (int clima = 0; clima < 4; clima++) {
+                    tiempos[clima] = Double.parseDouble(partes[3 + clima]);
+                }
+                return new Operacion(Tipo.CONEXION, partes[1], partes[2], tiempos, -1);
+            case "clima":
+                int clima = Integer.parseInt(partes[1]);
+                if (clima < 0 || clima > 3) {
+                    throw new IllegalArgumentException("Clima no válido: " + clima);
+                }
+                return new Operacion(Tipo.CLIMA, null, null, null, clima);
+            default:
+                throw new IllegalArgumentException("Operación desconocida: " + partes[0]);
+        }
+    }
+
+    /** Graba la traza para reproducirla después. */
+    public void guardar(String nombreArchivo) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(nombreArchivo)))) {
+            for (Operacion operacion : operaciones) {
+                writer.println(operacion);
+            }
+        }
+    }
+
+    public List<Operacion> getOperaciones() {
+        return operaciones;
+    }
+}